@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper;
+
+import java.util.concurrent.TimeUnit;
+
+import org.foobar.minesweeper.model.Boards;
+import org.foobar.minesweeper.model.ChangeSet;
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Minefield.FieldHandler;
+import org.foobar.minesweeper.model.Minefield.State;
+import org.foobar.minesweeper.model.Square;
+import org.foobar.minesweeper.model.Squares;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the board-side work of painting the way {@code MinesweeperPane}
+ * does: reading each square and choosing its tile. Tiles are written to an
+ * array instead of a canvas so the benchmark runs without a JavaFX toolkit;
+ * it does not include the cost of the draw calls themselves.
+ *
+ * <p>
+ * {@code fullBoard} paints every square, {@code viewport} paints the squares
+ * visible in a 480x480 canvas, and {@code changes} paints the squares changed
+ * by the first cascade on the board.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PaintBenchmark {
+  private static final int VIEWPORT_SQUARES = 480 / FieldCanvas.SQUAREW;
+
+  @Param({"100", "1000"})
+  private int size;
+
+  @Param({"0.05", "0.2"})
+  private double density;
+
+  private Minefield field;
+  private int[] frame;
+  private int[] changedRows;
+  private int[] changedColumns;
+
+  @Setup
+  public void setUp() {
+    field = Boards.placed(size, density);
+    frame = new int[size * size];
+
+    field.addFieldHandler(new FieldHandler() {
+      @Override public void updateSquare(Square square) {
+        changedRows = new int[] {square.getRow()};
+        changedColumns = new int[] {square.getColumn()};
+      }
+
+      @Override public void updateSquares(ChangeSet changes) {
+        changedRows = new int[changes.size()];
+        changedColumns = new int[changes.size()];
+
+        for (int i = 0; i < changes.size(); i++) {
+          changedRows[i] = changes.getRow(i);
+          changedColumns[i] = changes.getColumn(i);
+        }
+      }
+
+      @Override public void updateBoard() {
+      }
+
+      @Override public void changeState(State state) {
+      }
+    });
+
+    field.getSquare(size / 2, size / 2).reveal();
+  }
+
+  @Benchmark
+  public int[] fullBoard() {
+    for (int row = 0; row < size; row++) {
+      for (int column = 0; column < size; column++) {
+        paint(row, column);
+      }
+    }
+
+    return frame;
+  }
+
+  @Benchmark
+  public int[] viewport() {
+    int last = Math.min(VIEWPORT_SQUARES, size);
+
+    for (int row = 0; row < last; row++) {
+      for (int column = 0; column < last; column++) {
+        paint(row, column);
+      }
+    }
+
+    return frame;
+  }
+
+  @Benchmark
+  public int[] changes() {
+    for (int i = 0; i < changedRows.length; i++) {
+      paint(changedRows[i], changedColumns[i]);
+    }
+
+    return frame;
+  }
+
+  private void paint(int row, int column) {
+    Square square = field.getSquare(row, column);
+    Tile tile = square.getType() == Squares.EXPOSED ? Tiles.getDigit(square
+        .getMineCount()) : Tiles.getImage(square.getType());
+
+    frame[row * size + column] = tile.ordinal();
+  }
+}
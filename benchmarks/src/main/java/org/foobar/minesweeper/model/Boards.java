@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Random;
+
+/**
+ * Builds reproducible boards for the benchmarks.
+ */
+public final class Boards {
+  private static final long SEED = 42;
+
+  private Boards() {
+  }
+
+  /**
+   * Creates a square board with mines covering {@code density} of it. The
+   * layout depends only on the arguments and the first click.
+   */
+  public static Minefield create(int size, double density) {
+    return new Minefield(size, size, mines(size, density), new Random(SEED));
+  }
+
+  /**
+   * Creates a board as {@link #create} does, with a layout holding the mines
+   * a first click on the center would place. Nothing is revealed; the first
+   * reveal places those mines without drawing on the random source.
+   */
+  public static Minefield placed(int size, double density) {
+    Minefield scratch = create(size, density);
+    scratch.getSquare(size / 2, size / 2).reveal();
+
+    int[] positions = new int[scratch.getMines()];
+    int count = 0;
+
+    for (int row = 0; row < size; row++) {
+      for (int column = 0; column < size; column++) {
+        if (scratch.getSquare(row, column).isMine()) {
+          positions[count++] = row * size + column;
+        }
+      }
+    }
+
+    Minefield field = create(size, density);
+    field.setLayout((rows, columns, mines, first, random) -> positions.clone());
+    return field;
+  }
+
+  public static int mines(int size, double density) {
+    return Math.max(1, (int) ((long) size * size * density));
+  }
+
+  public static int center(int size) {
+    return (size / 2) * size + size / 2;
+  }
+
+  /**
+   * Finds an exposed numbered square with a covered safe neighbor, and flags
+   * its mines so that {@code revealNearby} on it reveals something.
+   *
+   * @return the square, or null if the board has none
+   */
+  public static Square prepareChord(Minefield field) {
+    int rows = field.getRowCount();
+    int columns = field.getColumnCount();
+
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        Square square = field.getSquare(row, column);
+
+        if (square.getType() != Squares.EXPOSED || square.getMineCount() == 0
+            || !hasCoveredSafeNeighbor(field, row, column)) {
+          continue;
+        }
+
+        for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+          for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, columns - 1); c++) {
+            Square neighbor = field.getSquare(r, c);
+
+            if (neighbor.isMine() && neighbor.getType() == Squares.BLANK) {
+              neighbor.toggleFlag();
+            }
+          }
+        }
+
+        return square;
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean hasCoveredSafeNeighbor(Minefield field, int row, int column) {
+    for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, field.getRowCount() - 1); r++) {
+      for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, field.getColumnCount() - 1); c++) {
+        Square neighbor = field.getSquare(r, c);
+
+        if (!neighbor.isMine() && neighbor.getType() == Squares.BLANK) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of many players on one {@code ConcurrentMinefield}.
+ * Each move picks a random square and flags it if it is a mine or reveals it
+ * otherwise, so the game is never lost. Run with {@code -t 1}, {@code -t 2},
+ * and so on to see how the throughput scales with threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentBenchmark {
+  @State(Scope.Benchmark)
+  public static class Board {
+    @Param({"2000"})
+    private int size;
+
+    @Param({"0.2"})
+    private double density;
+
+    private ConcurrentMinefield field;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+      field = new ConcurrentMinefield(size, size, (int) (size * size * density), new Random(1));
+      field.reveal(size / 2, size / 2);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Player {
+    private final Random random = new Random();
+  }
+
+  @Benchmark
+  public ConcurrentMinefield move(Board board, Player player) {
+    ConcurrentMinefield field = board.field;
+    int row = player.random.nextInt(board.size);
+    int column = player.random.nextInt(board.size);
+
+    if (field.isMine(row, column)) {
+      field.toggleFlag(row, column);
+    } else {
+      field.reveal(row, column);
+    }
+
+    return field;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building a {@code Minefield}, resetting it, and the first click,
+ * which places the mines and opens the board around the center.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MinefieldBenchmark {
+  @Param({"100", "1000"})
+  private int size;
+
+  @Param({"0.05", "0.1", "0.2"})
+  private double density;
+
+  private Minefield field;
+
+  @Setup
+  public void setUp() {
+    field = Boards.create(size, density);
+  }
+
+  @Benchmark
+  public Minefield construct() {
+    return new Minefield(size, size, Boards.mines(size, density));
+  }
+
+  @Benchmark
+  public Minefield reset() {
+    field.reset();
+    return field;
+  }
+
+  @State(Scope.Thread)
+  public static class Cleared {
+    Minefield field;
+
+    @Setup(Level.Invocation)
+    public void setUp(MinefieldBenchmark benchmark) {
+      if (field == null) {
+        field = Boards.create(benchmark.size, benchmark.density);
+      }
+
+      field.reset();
+    }
+  }
+
+  @Benchmark
+  public Minefield firstClick(Cleared cleared) {
+    cleared.field.getSquare(size / 2, size / 2).reveal();
+    return cleared.field;
+  }
+}
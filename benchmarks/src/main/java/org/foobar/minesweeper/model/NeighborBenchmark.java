@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the precomputed offset tables in {@link Neighbors} against the
+ * list-building neighbor search that {@code Minefield} used to have. Each
+ * invocation visits the neighbors of every cell on the board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NeighborBenchmark {
+  @Param({"10", "100", "1000"})
+  private int size;
+
+  private Neighbors neighbors;
+  private Square[][] table;
+
+  @Setup
+  public void setUp() {
+    Minefield field = new Minefield(size, size, 1);
+
+    neighbors = new Neighbors(size, size);
+    table = new Square[size][size];
+
+    for (int r = 0; r < size; r++) {
+      for (int c = 0; c < size; c++) {
+        table[r][c] = field.getSquare(r, c);
+      }
+    }
+  }
+
+  @Benchmark
+  public long offsetTables() {
+    long sum = 0;
+
+    for (int index = 0; index < size * size; index++) {
+      for (int offset : neighbors.offsets(index)) {
+        sum += index + offset;
+      }
+    }
+
+    return sum;
+  }
+
+  @Benchmark
+  public long findNeighborsList() {
+    long sum = 0;
+
+    for (int r = 0; r < size; r++) {
+      for (int c = 0; c < size; c++) {
+        for (Square square : findNeighbors(r, c)) {
+          sum += square.getIndex();
+        }
+      }
+    }
+
+    return sum;
+  }
+
+  /** The former {@code Minefield.findNeighbors}, kept as a baseline. */
+  private List<Square> findNeighbors(int row, int column) {
+    List<Square> list = new ArrayList<>(8);
+
+    for (int r = row - 1; r <= row + 1; r++) {
+      for (int c = column - 1; c <= column + 1; c++) {
+        if ((r != row || c != column) && r >= 0 && c >= 0 && r < size && c < size) {
+          list.add(table[r][c]);
+        }
+      }
+    }
+
+    return list;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a sequential cascade with a parallel one on very sparse boards,
+ * where a single reveal opens most of the board. The parallel flood uses the
+ * common fork-join pool, so its speedup depends on the number of cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class ParallelCascadeBenchmark {
+  @Param({"2000", "7000"})
+  private int size;
+
+  @Param({"0.005"})
+  private double density;
+
+  @Param({"false", "true"})
+  private boolean parallel;
+
+  private Minefield placed;
+
+  @Setup
+  public void setUpBoard() {
+    placed = Boards.placed(size, density);
+    placed.setParallelThreshold(parallel ? 1 : Integer.MAX_VALUE);
+  }
+
+  @Benchmark
+  public Minefield cascade() {
+    Minefield game = placed.fork();
+    game.reveal(Boards.center(size));
+    return game;
+  }
+}
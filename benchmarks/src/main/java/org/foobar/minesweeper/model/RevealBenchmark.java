@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures cascades started by {@code Square.reveal} and chords started by
+ * {@code Square.revealNearby}. Every invocation plays on a fresh fork of a
+ * prepared board, so the measured time includes copying the parts of the
+ * board the move changes.
+ *
+ * <p>
+ * The cascade is the first click on the center of a board with a fixed
+ * layout, so its size follows from the board size and density. It includes
+ * placing the layout's mines, as every first click does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RevealBenchmark {
+  @Param({"100", "1000"})
+  private int size;
+
+  @Param({"0.05", "0.1", "0.2"})
+  private double density;
+
+  private Minefield placed;
+  private Minefield opened;
+  private Square chord;
+
+  @Setup
+  public void setUpBoards() {
+    placed = Boards.placed(size, density);
+
+    opened = Boards.placed(size, density);
+    opened.reveal(Boards.center(size));
+    chord = Boards.prepareChord(opened);
+
+    if (chord == null) {
+      throw new IllegalStateException("no chord on this board");
+    }
+  }
+
+  @Benchmark
+  public Minefield cascade() {
+    Minefield game = placed.fork();
+    game.reveal(Boards.center(size));
+    return game;
+  }
+
+  @Benchmark
+  public Minefield chord() {
+    Minefield game = opened.fork();
+    game.revealNearby(chord.getIndex());
+    return game;
+  }
+}
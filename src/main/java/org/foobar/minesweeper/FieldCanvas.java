@@ -20,32 +20,141 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
 
+/**
+ * A canvas that shows a scrollable window onto a board of squares. Only the
+ * squares inside the window are ever painted, so the canvas stays the size of
+ * the viewport no matter how large the board is.
+ */
 public class FieldCanvas extends Canvas {
   private final SelectionModel select = new SelectionModel();
-  public static final int SQUAREW = 24;
-  public static final int SQUAREH = 24;
+  public static final int SQUAREW = Tiles.WIDTH;
+  public static final int SQUAREH = Tiles.HEIGHT;
+  private final int rows;
+  private final int columns;
+  private double scrollX;
+  private double scrollY;
+  private double zoom = 1;
+  private Image atlas = Tiles.getAtlas(1);
+
+  public FieldCanvas(int rows, int columns, double width, double height) {
+    super(Math.min(width, columns * SQUAREW), Math.min(height, rows * SQUAREH));
+    this.rows = rows;
+    this.columns = columns;
+  }
 
   public void setSelection(int row, int column) {
-    drawImage(row, column, Tiles.EXPOSED);
+    drawTile(row, column, Tiles.EXPOSED);
     select.select(row, column);
   }
 
   public void clearSelection() {
-    drawImage(select.getRow(), select.getColumn(), Tiles.BLANK);
-    select.clear();
+    if (!select.isEmpty()) {
+      drawTile(select.getRow(), select.getColumn(), Tiles.BLANK);
+      select.clear();
+    }
   }
 
   public int scaleRow(double y) {
-    return (int) (y / SQUAREH);
+    return (int) ((y + scrollY) / (SQUAREH * zoom));
   }
 
   public int scaleColumn(double x) {
-    return (int) (x / SQUAREW);
+    return (int) ((x + scrollX) / (SQUAREW * zoom));
+  }
+
+  public int getRowCount() {
+    return rows;
+  }
+
+  public int getColumnCount() {
+    return columns;
+  }
+
+  public double getZoom() {
+    return zoom;
+  }
+
+  /**
+   * Sets the size of a square relative to its natural size, keeping the
+   * square at the top left of the window in place.
+   */
+  public void setZoom(double zoom) {
+    scrollX = scrollX / this.zoom * zoom;
+    scrollY = scrollY / this.zoom * zoom;
+    this.zoom = zoom;
+    updateAtlas();
+    scrollBy(0, 0);
+  }
+
+  /**
+   * Scrolls the window by the given number of pixels, stopping at the edges
+   * of the board.
+   *
+   * @return true if the window moved and needs repainting
+   */
+  public boolean scrollBy(double dx, double dy) {
+    double x = clamp(scrollX + dx, columns * SQUAREW * zoom - getWidth());
+    double y = clamp(scrollY + dy, rows * SQUAREH * zoom - getHeight());
+
+    if (x == scrollX && y == scrollY) {
+      return false;
+    }
+
+    scrollX = x;
+    scrollY = y;
+    return true;
+  }
+
+  public int getFirstRow() {
+    return scaleRow(0);
   }
 
+  public int getLastRow() {
+    return Math.min(scaleRow(getHeight() - 1), rows - 1);
+  }
+
+  public int getFirstColumn() {
+    return scaleColumn(0);
+  }
+
+  public int getLastColumn() {
+    return Math.min(scaleColumn(getWidth() - 1), columns - 1);
+  }
+
+  /**
+   * Determines whether a square lies on the board. When the zoomed board is
+   * smaller than the canvas, points past its edge scale to squares that do
+   * not exist.
+   */
+  public boolean isOnBoard(int row, int column) {
+    return row >= 0 && row < rows && column >= 0 && column < columns;
+  }
+
+  public boolean isVisible(int row, int column) {
+    return row >= getFirstRow() && row <= getLastRow()
+        && column >= getFirstColumn() && column <= getLastColumn();
+  }
+
+  public void clear() {
+    getGraphicsContext2D().clearRect(0, 0, getWidth(), getHeight());
+  }
+
+  public void drawTile(int row, int column, Tile tile) {
+    if (isVisible(row, column)) {
+      double w = SQUAREW * zoom;
+      double h = SQUAREH * zoom;
+
+      GraphicsContext gc = getGraphicsContext2D();
+      gc.drawImage(atlas, tile.ordinal() * SQUAREW * zoom, 0, w, h,
+          column * w - scrollX, row * h - scrollY, w, h);
+    }
+  }
+
+  private void updateAtlas() {
+    atlas = Tiles.getAtlas(zoom);
+  }
 
-  public void drawImage(int row, int column, Image image) {
-    GraphicsContext gc = getGraphicsContext2D();
-    gc.drawImage(image, column * SQUAREW, row * SQUAREH);
+  private static double clamp(double value, double max) {
+    return Math.max(0, Math.min(value, Math.max(max, 0)));
   }
 }
@@ -16,6 +16,10 @@
 
 package org.foobar.minesweeper;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import javafx.application.Application;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
@@ -30,13 +34,28 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
 
+import org.foobar.minesweeper.metrics.Metrics;
+import org.foobar.minesweeper.model.LayoutPool;
 import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.solver.NoGuessGenerator;
 
 /**
  * The application class for JavaFX Minesweeper
  *
+ * <p>
+ * Mines are placed uniformly at random. Start the application with
+ * {@code --no-guess} to play boards that can be solved without guessing.
  */
 public class Minesweeper extends Application {
+  private static final int ROWS = 10;
+  private static final int COLUMNS = 10;
+  private static final int MINES = 10;
+  private LayoutPool layouts;
+  private final ExecutorService game = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "game");
+    thread.setDaemon(true);
+    return thread;
+  });
   private final Pane canvas = new Pane();
   private final ScrollPane sPane = new ScrollPane();
   private boolean spawnMode;
@@ -45,6 +64,12 @@ public class Minesweeper extends Application {
   }
 
   @Override public void start(Stage stage) {
+    // Plain games place their mines on the first click, which is cheap
+    // enough not to pool.
+    if (getParameters().getUnnamed().contains("--no-guess")) {
+      layouts = new LayoutPool(new NoGuessGenerator());
+    }
+
     Button button = new Button("New Minesweeper");
 
     button.setOnAction(this::onNewMinesweeper);
@@ -68,19 +93,45 @@ public class Minesweeper extends Application {
     stage.setScene(new Scene(bpane, 600, 600));
 
     stage.show();
+
+    if (layouts != null) {
+      layouts.prefetch(ROWS, COLUMNS, MINES);
+    }
+
+    Metrics.register();
+  }
+
+  @Override public void stop() {
+    game.shutdownNow();
+
+    if (layouts != null) {
+      layouts.shutdown();
+    }
+  }
+
+  /**
+   * Gets the executor that plays the moves of every board. It runs one move
+   * at a time, in the order the moves were made.
+   *
+   * @return the game executor
+   */
+  public Executor getGameExecutor() {
+    return game;
   }
 
   private void onPaneClicked(MouseEvent event) {
     if (!spawnMode)
       return;
 
-    Minefield minefield = new Minefield(10, 10, 10);
+    Minefield minefield = new Minefield(ROWS, COLUMNS, MINES);
+    minefield.setLayout(layouts);
 
     MinesweeperPane minesweeper = new MinesweeperPane(minefield, this);
     minesweeper.asParent().relocate(event.getX(), event.getY());
     minesweeper.asParent().requestFocus();
 
     canvas.getChildren().add(minesweeper.asParent());
+    Metrics.render().boardOpened();
     spawnMode = false;
     sPane.setCursor(Cursor.DEFAULT);
   }
@@ -93,10 +144,14 @@ public class Minesweeper extends Application {
     cloned.asParent().setLayoutX(x + 20);
     cloned.asParent().setLayoutY(y + 20);
     canvas.getChildren().add(cloned.asParent());
+    Metrics.render().boardOpened();
   }
 
   public void onClose(MinesweeperPane toClose) {
-    canvas.getChildren().remove(toClose.asParent());
+    if (canvas.getChildren().remove(toClose.asParent())) {
+      toClose.close();
+      Metrics.render().boardClosed();
+    }
   }
 
   private void onNewMinesweeper(ActionEvent event) {
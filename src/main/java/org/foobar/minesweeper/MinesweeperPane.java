@@ -16,62 +16,108 @@
 
 package org.foobar.minesweeper;
 
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Parent;
 import javafx.scene.control.ButtonBuilder;
 import javafx.scene.control.Label;
 import javafx.scene.control.LabelBuilder;
-import javafx.scene.image.Image;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.HBoxBuilder;
 import javafx.scene.layout.PaneBuilder;
 
+import org.foobar.minesweeper.jfr.DrawSquareEvent;
+import org.foobar.minesweeper.model.ChangeSet;
+import org.foobar.minesweeper.model.HandlerRegistration;
 import org.foobar.minesweeper.model.Minefield;
 import org.foobar.minesweeper.model.Minefield.FieldHandler;
 import org.foobar.minesweeper.model.Minefield.State;
 import org.foobar.minesweeper.model.Square;
 import org.foobar.minesweeper.model.Squares;
 
+/**
+ * A window onto one game. Moves are played on the application's game
+ * executor, never on the JavaFX Application Thread, so a long cascade does
+ * not freeze input or animation.
+ *
+ * <p>
+ * The game thread collects the squares each move changes into a batch. When
+ * no hand-off is outstanding, it forks the minefield and hands the fork and
+ * the batch to the JavaFX thread with {@code Platform.runLater}. Moves made
+ * meanwhile go into the next batch, which is handed off once the JavaFX
+ * thread has taken the current one, so the field is forked at most once per
+ * hand-off. The pane paints from the latest fork, which the game thread
+ * never writes to.
+ */
 public final class MinesweeperPane implements HasParent {
+  private static final double VIEWPORT_WIDTH = 480;
+  private static final double VIEWPORT_HEIGHT = 480;
+  private static final double MIN_ZOOM = 0.5;
+  private static final double MAX_ZOOM = 2;
+  // A batch with more changes than this repaints the whole viewport instead.
+  private static final int MAX_BATCH = 1024;
   private final Parent root;
   private final Label status;
   private final int rows;
   private final int columns;
   private final Minefield field;
+  private final Executor executor;
   private final FieldCanvas canvas;
+  private final RenderScheduler scheduler;
   private final Minesweeper appController;
+  private final HandlerRegistration registration;
+  private Minefield view;
+
+  // The batch being collected and the one handed off, guarded by batchLock.
+  private final Object batchLock = new Object();
+  private Batch batch = new Batch();
+  private Batch posted;
+  private boolean dirty;
 
   public MinesweeperPane(MinesweeperPane pane) {
-    this(pane.field, pane.appController);
+    this(pane.view.fork(), pane.appController);
   }
 
+  /**
+   * Creates a pane for {@code field}. From then on the field belongs to the
+   * game executor and must not be used from any other thread.
+   */
   public MinesweeperPane(Minefield field, final Minesweeper appController) {
     this.field = field;
     this.appController = appController;
 
+    executor = appController.getGameExecutor();
+    view = field.fork();
+
     rows = field.getRowCount();
     columns = field.getColumnCount();
 
-    canvas = new FieldCanvas();
+    canvas = new FieldCanvas(rows, columns, VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
     canvas.setLayoutX(14);
     canvas.setLayoutY(49.0);
-    canvas.setWidth(240);
-    canvas.setHeight(240);
 
     canvas.setOnMouseClicked(this::onCanvasClicked);
 
     canvas.setOnMousePressed(this::onCanvasPressed);
 
+    canvas.setOnScroll(this::onCanvasScrolled);
+
+    scheduler = new RenderScheduler(canvas, this::drawSquare);
+
     root = PaneBuilder.create()
         .style("-fx-border-color: black;"
             + "-fx-border-width: 1;"
             + "-fx-border-radius: 6;"
             + "-fx-padding: 6;"
             + "-fx-background-color: white;")
-        .prefHeight(308)
-        .prefWidth(268)
+        .prefHeight(canvas.getHeight() + 68)
+        .prefWidth(canvas.getWidth() + 28)
         .children(
             HBoxBuilder.create()
             .layoutX(14)
@@ -86,73 +132,196 @@ public final class MinesweeperPane implements HasParent {
                 .onAction(event -> appController.onClone(MinesweeperPane.this)).build(),
                 ButtonBuilder.create()
                 .text("_Close")
-                .onAction(event -> appController.onClone(MinesweeperPane.this)).build()
+                .onAction(event -> appController.onClose(MinesweeperPane.this)).build()
             ).build(),
          canvas,
          status = LabelBuilder.create()
          .text("")
          .layoutX(14)
-         .layoutY(290).build()
+         .layoutY(canvas.getHeight() + 50).build()
         ).build();
 
     Draggable.makeDraggable(root);
 
-    field.addFieldHandler(new FieldHandler() {
+    updateText(field.getState());
+    scheduler.invalidateAll();
+
+    registration = field.addFieldHandler(new FieldHandler() {
       @Override public void updateSquare(Square square) {
-        drawSquare(square);
+        synchronized (batchLock) {
+          batch.add(square.getRow() * columns + square.getColumn());
+          dirty = true;
+        }
+      }
+
+      @Override public void updateSquares(ChangeSet changes) {
+        synchronized (batchLock) {
+          for (int i = 0; i < changes.size() && !batch.all; i++) {
+            batch.add(changes.getRow(i) * columns + changes.getColumn(i));
+          }
+
+          dirty = true;
+        }
       }
 
       @Override public void updateBoard() {
-        drawBoard();
+        synchronized (batchLock) {
+          batch.all = true;
+          dirty = true;
+        }
       }
 
       @Override public void changeState(State state) {
-        updateText(state);
+        synchronized (batchLock) {
+          batch.state = state;
+          dirty = true;
+        }
       }
     });
   }
 
+  /**
+   * Stops listening to the field once the pane is closed.
+   */
+  public void close() {
+    registration.removeHandler();
+  }
+
   public Parent asParent() {
     return root;
   }
 
   private void onNewGame() {
-    field.reset();
+    play(field::reset);
   }
 
   private void onCanvasClicked(MouseEvent event) {
-    Square square = findSquare(event);
+    int row = canvas.scaleRow(event.getY());
+    int column = canvas.scaleColumn(event.getX());
     int clicks = event.getClickCount();
     MouseButton button = event.getButton();
 
+    if (!canvas.isOnBoard(row, column)) {
+      return;
+    }
+
     // FIXME: square doesn't always redraw after mouse click
 
     if (button == MouseButton.MIDDLE
         || (clicks == 2 && button == MouseButton.PRIMARY)) {
-      square.revealNearby();
+      play(() -> field.getSquare(row, column).revealNearby());
     } else if (clicks == 1 && button == MouseButton.PRIMARY) {
       canvas.clearSelection();
-      square.reveal();
+      play(() -> field.getSquare(row, column).reveal());
     }
   }
 
   private void onCanvasPressed(MouseEvent event) {
-    Square square = findSquare(event);
-    int row = square.getRow();
-    int column = square.getColumn();
+    int row = canvas.scaleRow(event.getY());
+    int column = canvas.scaleColumn(event.getX());
+
+    if (!canvas.isOnBoard(row, column)) {
+      return;
+    }
 
     if (event.isSecondaryButtonDown()) {
-      square.toggleFlag();
-    } else if (event.isPrimaryButtonDown() && square.isRevealable()) {
+      play(() -> field.getSquare(row, column).toggleFlag());
+    } else if (event.isPrimaryButtonDown()
+        && view.getSquare(row, column).isRevealable()) {
       canvas.setSelection(row, column);
     }
   }
 
-  private void drawSquare(Square square) {
-    Image image = square.getType() == Squares.EXPOSED ? Tiles.getDigit(square
+  /**
+   * Plays a move on the game executor and then hands its changes to the
+   * JavaFX thread. The executor runs moves in the order they were made.
+   */
+  private void play(Runnable move) {
+    executor.execute(() -> {
+      move.run();
+      publish();
+    });
+  }
+
+  /**
+   * Called on the game thread after each move. Hands off the collected batch
+   * with a fork of the field, unless nothing changed or a hand-off is still
+   * outstanding.
+   */
+  private void publish() {
+    synchronized (batchLock) {
+      if (!dirty || posted != null) {
+        return;
+      }
+
+      batch.view = field.fork();
+      posted = batch;
+      batch = new Batch();
+      dirty = false;
+    }
+
+    Platform.runLater(this::applyBatch);
+  }
+
+  /**
+   * Called on the JavaFX thread to take the handed-off batch and schedule
+   * the squares it changed for painting. If moves were made since, the game
+   * thread is asked to hand off the next batch.
+   */
+  private void applyBatch() {
+    Batch taken;
+    boolean more;
+
+    synchronized (batchLock) {
+      taken = posted;
+      posted = null;
+      more = dirty;
+    }
+
+    view = taken.view;
+
+    if (taken.all) {
+      scheduler.invalidateAll();
+    } else {
+      for (int i = 0; i < taken.size; i++) {
+        scheduler.invalidate(taken.squares[i] / columns, taken.squares[i] % columns);
+      }
+    }
+
+    if (taken.state != null) {
+      updateText(taken.state);
+    }
+
+    if (more) {
+      executor.execute(this::publish);
+    }
+  }
+
+  private void onCanvasScrolled(ScrollEvent event) {
+    if (event.isControlDown()) {
+      double zoom = canvas.getZoom() * (event.getDeltaY() > 0 ? 2 : 0.5);
+
+      if (zoom >= MIN_ZOOM && zoom <= MAX_ZOOM) {
+        canvas.setZoom(zoom);
+        scheduler.invalidateAll();
+      }
+    } else if (canvas.scrollBy(-event.getDeltaX(), -event.getDeltaY())) {
+      scheduler.invalidateAll();
+    }
+
+    event.consume();
+  }
+
+  private void drawSquare(int row, int column) {
+    DrawSquareEvent event = new DrawSquareEvent();
+    event.begin();
+
+    Square square = view.getSquare(row, column);
+    Tile tile = square.getType() == Squares.EXPOSED ? Tiles.getDigit(square
         .getMineCount()) : Tiles.getImage(square.getType());
 
-    canvas.drawImage(square.getRow(), square.getColumn(), image);
+    canvas.drawTile(row, column, tile);
+    event.commit(rows, columns, 1);
   }
 
   private void updateText(Minefield.State state) {
@@ -172,16 +341,31 @@ public final class MinesweeperPane implements HasParent {
     status.setText(text);
   }
 
-  private void drawBoard() {
-    for (int row = 0; row < rows; row++) {
-      for (int column = 0; column < columns; column++) {
-        drawSquare(field.getSquare(row, column));
+  /**
+   * The squares changed by the moves since the last hand-off.
+   */
+  private static final class Batch {
+    int[] squares = new int[64];
+    int size;
+    boolean all;
+    State state;
+    Minefield view;
+
+    void add(int index) {
+      if (all) {
+        return;
+      }
+
+      if (size == MAX_BATCH) {
+        all = true;
+        return;
       }
-    }
-  }
 
-  private Square findSquare(MouseEvent event) {
-    return field.getSquare(canvas.scaleRow(event.getY()),
-        canvas.scaleColumn(event.getX()));
+      if (size == squares.length) {
+        squares = Arrays.copyOf(squares, size * 2);
+      }
+
+      squares[size++] = index;
+    }
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper;
+
+import java.util.BitSet;
+
+import javafx.animation.AnimationTimer;
+
+import org.foobar.minesweeper.jfr.PaintEvent;
+import org.foobar.minesweeper.metrics.Metrics;
+
+/**
+ * Collects repaint requests for a {@code FieldCanvas} and paints them once per
+ * JavaFX pulse. A square that is invalidated several times between two pulses
+ * is painted only once, and squares outside the viewport are not painted at
+ * all.
+ *
+ * <p>
+ * The scheduler counts every invalidation it receives. Each one is either
+ * painted, coalesced into a paint that was already pending, or dropped
+ * because its square was outside the viewport. Each frame adds its counts
+ * to {@code Metrics.render()}.
+ */
+public class RenderScheduler extends AnimationTimer {
+  private final FieldCanvas canvas;
+  private final Painter painter;
+  private final BitSet dirty = new BitSet();
+  private boolean dirtyAll;
+  private boolean running;
+  private long invalidated;
+  private long coalesced;
+  private long painted;
+  private long reportedInvalidated;
+  private long reportedCoalesced;
+
+  public RenderScheduler(FieldCanvas canvas, Painter painter) {
+    this.canvas = canvas;
+    this.painter = painter;
+  }
+
+  /**
+   * Asks for the square at {@code row} and {@code column} to be painted on the
+   * next pulse.
+   */
+  public void invalidate(int row, int column) {
+    invalidated++;
+
+    if (!canvas.isVisible(row, column)) {
+      return;
+    }
+
+    int bit = (row - canvas.getFirstRow()) * getVisibleColumns()
+        + (column - canvas.getFirstColumn());
+
+    if (dirtyAll || dirty.get(bit)) {
+      coalesced++;
+    } else {
+      dirty.set(bit);
+      schedule();
+    }
+  }
+
+  /**
+   * Asks for every visible square to be painted on the next pulse. This must
+   * be called whenever the viewport scrolls or zooms.
+   */
+  public void invalidateAll() {
+    invalidated++;
+
+    if (dirtyAll) {
+      coalesced++;
+    } else {
+      dirtyAll = true;
+      schedule();
+    }
+  }
+
+  public long getInvalidatedCount() {
+    return invalidated;
+  }
+
+  public long getCoalescedCount() {
+    return coalesced;
+  }
+
+  public long getPaintedCount() {
+    return painted;
+  }
+
+  @Override public void handle(long now) {
+    PaintEvent event = new PaintEvent();
+    event.begin();
+    long start = Metrics.start();
+    long paintedBefore = painted;
+    int firstRow = canvas.getFirstRow();
+    int firstColumn = canvas.getFirstColumn();
+
+    if (dirtyAll) {
+      canvas.clear();
+
+      for (int row = firstRow; row <= canvas.getLastRow(); row++) {
+        for (int column = firstColumn; column <= canvas.getLastColumn(); column++) {
+          painter.paint(row, column);
+          painted++;
+        }
+      }
+    } else {
+      int visibleColumns = getVisibleColumns();
+
+      for (int bit = dirty.nextSetBit(0); bit >= 0; bit = dirty.nextSetBit(bit + 1)) {
+        painter.paint(firstRow + bit / visibleColumns, firstColumn + bit % visibleColumns);
+        painted++;
+      }
+    }
+
+    dirty.clear();
+    dirtyAll = false;
+    running = false;
+    stop();
+
+    Metrics.render().frame(start, invalidated - reportedInvalidated,
+        coalesced - reportedCoalesced, painted - paintedBefore);
+    reportedInvalidated = invalidated;
+    reportedCoalesced = coalesced;
+    event.commit(canvas.getRowCount(), canvas.getColumnCount(), painted - paintedBefore);
+  }
+
+  private int getVisibleColumns() {
+    return canvas.getLastColumn() - canvas.getFirstColumn() + 1;
+  }
+
+  private void schedule() {
+    if (!running) {
+      running = true;
+      start();
+    }
+  }
+
+  /**
+   * Paints a single square of the board.
+   */
+  @FunctionalInterface
+  public interface Painter {
+    void paint(int row, int column);
+  }
+}
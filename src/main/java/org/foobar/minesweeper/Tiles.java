@@ -16,32 +16,42 @@
 
 package org.foobar.minesweeper;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.util.HashMap;
+import java.util.Map;
+
 import javafx.scene.image.Image;
 
 import org.foobar.minesweeper.model.Squares;
 
+/**
+ * Loads the tile atlas and maps squares to tiles. Every tile is a
+ * sub-rectangle of one atlas image, so a board is painted from a single
+ * texture. Copies of the atlas scaled for each zoom level are decoded once
+ * and cached.
+ */
 public class Tiles {
-  public static final Image BLANK = loadImage("blank.png");
-  public static final Image FLAG = loadImage("flag.png");
-  public static final Image EXPOSED = loadImage("exposed.png");
-  public static final Image MINE = loadImage("mine.png");
-  public static final Image HITMINE = loadImage("hitmine.png");
-  public static final Image WRONGMINE = loadImage("wrongmine.png");
-  private static final Image[] digits = new Image[9];
-
-  static {
-    digits[0] = EXPOSED;
-
-    for(int i=1; i < digits.length; i++) {
-      digits[i] = loadImage(String.format("number%d.png", i));
-    }
-  }
+  public static final Tile BLANK = Tile.BLANK;
+  public static final Tile FLAG = Tile.FLAG;
+  public static final Tile EXPOSED = Tile.EXPOSED;
+  public static final Tile MINE = Tile.MINE;
+  public static final Tile HITMINE = Tile.HITMINE;
+  public static final Tile WRONGMINE = Tile.WRONGMINE;
+  public static final int WIDTH = 24;
+  public static final int HEIGHT = 24;
+  private static final String ATLAS = "/tiles.png";
+  private static final Tile[] digits = {
+    Tile.EXPOSED, Tile.NUMBER1, Tile.NUMBER2, Tile.NUMBER3, Tile.NUMBER4,
+    Tile.NUMBER5, Tile.NUMBER6, Tile.NUMBER7, Tile.NUMBER8
+  };
+  private static final Map<Double, Image> atlases = new HashMap<>();
 
   private Tiles() {
   }
 
-  public static Image getImage(Squares square) {
+  public static Tile getImage(Squares square) {
     switch (square) {
     case BLANK:
       return Tiles.BLANK;
@@ -60,13 +70,36 @@ public class Tiles {
     }
   }
 
-  public static Image getDigit(int index) {
+  public static Tile getDigit(int index) {
     checkPositionIndex(index, 8);
 
     return digits[index];
   }
 
-  private static Image loadImage(String path) {
-    return new Image(Tiles.class.getResourceAsStream("/" + path));
+  /**
+   * Gets the atlas scaled by {@code scale}, decoding it the first time each
+   * scale is asked for. Tile {@code t} occupies the rectangle starting at
+   * {@code t.ordinal() * WIDTH * scale} with size {@code WIDTH * scale} by
+   * {@code HEIGHT * scale}.
+   *
+   * @param scale the zoom level
+   * @return the scaled atlas
+   */
+  public static Image getAtlas(double scale) {
+    checkArgument(scale > 0, "scale must be positive: %s", scale);
+
+    return atlases.computeIfAbsent(scale, Tiles::loadAtlas);
+  }
+
+  private static Image loadAtlas(double scale) {
+    String url = Tiles.class.getResource(ATLAS).toExternalForm();
+
+    if (scale == 1) {
+      return new Image(url);
+    }
+
+    int count = Tile.values().length;
+
+    return new Image(url, count * WIDTH * scale, HEIGHT * scale, false, true);
   }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * An operation on a board. Call {@code begin()} before the operation and
+ * {@link #commit(int, int, long)} after it; the event's duration is the time
+ * between the two.
+ */
+@Category("Minesweeper")
+@StackTrace(false)
+public abstract class BoardEvent extends Event {
+  @Label("Rows")
+  int rows;
+
+  @Label("Columns")
+  int columns;
+
+  @Label("Squares")
+  @Description("Number of squares the operation changed or painted")
+  long squares;
+
+  /**
+   * Ends the event and writes it if it is enabled and lasted at least its
+   * threshold.
+   */
+  public final void commit(int rows, int columns, long squares) {
+    if (shouldCommit()) {
+      this.rows = rows;
+      this.columns = columns;
+      this.squares = squares;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of every {@code Minefield}: how many moves of each kind were made,
+ * how large the cascades were and how long reveals, first clicks and handler
+ * dispatch took.
+ */
+public final class GameMetrics implements GameMetricsMXBean {
+  private final LongAdder reveals = new LongAdder();
+  private final LongAdder flags = new LongAdder();
+  private final LongAdder chords = new LongAdder();
+  private final Histogram cascadeSize = new Histogram();
+  private final Histogram revealLatency = new Histogram();
+  private final Histogram firstClickLatency = new Histogram();
+  private final Histogram dispatchLatency = new Histogram();
+  private final LongAdder handlers = new LongAdder();
+
+  GameMetrics() {
+  }
+
+  /**
+   * Counts a reveal that started at {@code start}.
+   */
+  public void reveal(long start) {
+    if (start != 0) {
+      reveals.increment();
+      revealLatency.recordSince(start);
+    }
+  }
+
+  public void flag() {
+    if (Metrics.isEnabled()) {
+      flags.increment();
+    }
+  }
+
+  public void chord() {
+    if (Metrics.isEnabled()) {
+      chords.increment();
+    }
+  }
+
+  public void cascade(int size) {
+    if (Metrics.isEnabled()) {
+      cascadeSize.record(size);
+    }
+  }
+
+  public void firstClick(long start) {
+    firstClickLatency.recordSince(start);
+  }
+
+  public void dispatch(long start) {
+    dispatchLatency.recordSince(start);
+  }
+
+  public void handlerAdded() {
+    handlers.increment();
+  }
+
+  public void handlerRemoved() {
+    handlers.decrement();
+  }
+
+  @Override public long getRevealCount() {
+    return reveals.sum();
+  }
+
+  @Override public long getFlagCount() {
+    return flags.sum();
+  }
+
+  @Override public long getChordCount() {
+    return chords.sum();
+  }
+
+  @Override public long getCascadeCount() {
+    return cascadeSize.snapshot().getCount();
+  }
+
+  @Override public Histogram.Snapshot getCascadeSize() {
+    return cascadeSize.snapshot();
+  }
+
+  @Override public Histogram.Snapshot getRevealLatency() {
+    return revealLatency.snapshot();
+  }
+
+  @Override public Histogram.Snapshot getFirstClickLatency() {
+    return firstClickLatency.snapshot();
+  }
+
+  @Override public Histogram.Snapshot getDispatchLatency() {
+    return dispatchLatency.snapshot();
+  }
+
+  @Override public long getLiveHandlerCount() {
+    return handlers.sum();
+  }
+
+  @Override public boolean isEnabled() {
+    return Metrics.isEnabled();
+  }
+
+  @Override public void setEnabled(boolean enabled) {
+    Metrics.setEnabled(enabled);
+  }
+
+  @Override public void reset() {
+    reveals.reset();
+    flags.reset();
+    chords.reset();
+    cascadeSize.reset();
+    revealLatency.reset();
+    firstClickLatency.reset();
+    dispatchLatency.reset();
+  }
+}
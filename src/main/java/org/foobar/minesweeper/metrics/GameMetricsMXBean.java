@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.metrics;
+
+/**
+ * The JMX view of {@link GameMetrics}. Latencies are in nanoseconds.
+ */
+public interface GameMetricsMXBean {
+  long getRevealCount();
+
+  long getFlagCount();
+
+  long getChordCount();
+
+  long getCascadeCount();
+
+  Histogram.Snapshot getCascadeSize();
+
+  Histogram.Snapshot getRevealLatency();
+
+  Histogram.Snapshot getFirstClickLatency();
+
+  Histogram.Snapshot getDispatchLatency();
+
+  long getLiveHandlerCount();
+
+  boolean isEnabled();
+
+  void setEnabled(boolean enabled);
+
+  /**
+   * Clears every counter and histogram, but not the gauges.
+   */
+  void reset();
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values with one bucket per power of
+ * two. Bucket {@code i} counts the values from {@code 2^(i-1)} to
+ * {@code 2^i - 1}, and bucket 0 counts zeros, so percentiles are accurate to
+ * within a factor of two. Recording never allocates or blocks.
+ */
+public final class Histogram {
+  private static final int BUCKETS = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records {@code value}. Negative values are recorded as zero.
+   */
+  public void record(long value) {
+    value = Math.max(value, 0);
+
+    buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+    count.increment();
+    sum.add(value);
+
+    for (long current = max.get(); value > current; current = max.get()) {
+      if (max.compareAndSet(current, value)) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Records the time since {@code start}, a value of {@code Metrics.start()}.
+   * Does nothing if {@code start} is zero, that is if metrics were off when
+   * the operation began.
+   */
+  public void recordSince(long start) {
+    if (start != 0) {
+      record(System.nanoTime() - start);
+    }
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  /**
+   * Copies the current values. Values recorded during the copy may be only
+   * partly included.
+   *
+   * @return the copy
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    int length = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+
+      if (counts[i] != 0) {
+        length = i + 1;
+      }
+    }
+
+    return new Snapshot(Arrays.copyOf(counts, length), count.sum(), sum.sum(), max.get());
+  }
+
+  /**
+   * A copy of a histogram. Over JMX it appears as composite data with an
+   * item for each getter.
+   */
+  public static final class Snapshot {
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(long[] buckets, long count, long sum, long max) {
+      this.buckets = buckets;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    /**
+     * Gets the counts of each bucket, up to the last one that is not empty.
+     *
+     * @return the bucket counts
+     */
+    public long[] getBuckets() {
+      return buckets.clone();
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    public long getP50() {
+      return getPercentile(0.5);
+    }
+
+    public long getP99() {
+      return getPercentile(0.99);
+    }
+
+    /**
+     * Gets an upper bound of the value below which {@code fraction} of the
+     * recorded values fall.
+     *
+     * @param fraction between 0 and 1
+     * @return the top of the bucket holding that value, or the largest value
+     *         recorded if it is smaller
+     */
+    public long getPercentile(double fraction) {
+      long rank = (long) Math.ceil(fraction * count);
+      long seen = 0;
+
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+
+        if (seen >= rank && seen > 0) {
+          return Math.min(max, i == 0 ? 0 : (1L << i) - 1);
+        }
+      }
+
+      return max;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The application's metrics. Recording is on by default and can be turned
+ * off here or through the {@code Enabled} attribute of either MXBean; while
+ * it is off, timed operations do not even read the clock. Gauges such as the
+ * number of live boards are kept up to date either way.
+ *
+ * <p>
+ * Timed operations follow this pattern:
+ *
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.game().reveal(start);
+ * </pre>
+ */
+public final class Metrics {
+  private static final GameMetrics GAME = new GameMetrics();
+  private static final RenderMetrics RENDER = new RenderMetrics();
+  private static volatile boolean enabled = true;
+  private static boolean registered;
+
+  private Metrics() {
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static void setEnabled(boolean enabled) {
+    Metrics.enabled = enabled;
+  }
+
+  /**
+   * Starts timing an operation.
+   *
+   * @return the current time in nanoseconds, or zero if metrics are off
+   */
+  public static long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  public static GameMetrics game() {
+    return GAME;
+  }
+
+  public static RenderMetrics render() {
+    return RENDER;
+  }
+
+  /**
+   * Registers the MXBeans with the platform MBean server, as
+   * {@code org.foobar.minesweeper:type=Game} and
+   * {@code org.foobar.minesweeper:type=Render}. Does nothing if they are
+   * already registered.
+   *
+   * @throws IllegalStateException if the MXBeans could not be registered
+   */
+  public static synchronized void register() {
+    if (registered) {
+      return;
+    }
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    try {
+      server.registerMBean(GAME, new ObjectName("org.foobar.minesweeper:type=Game"));
+      server.registerMBean(RENDER, new ObjectName("org.foobar.minesweeper:type=Render"));
+    } catch (JMException e) {
+      throw new IllegalStateException("could not register metrics", e);
+    }
+
+    registered = true;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the boards on screen: how many squares were asked to be
+ * painted and how many of those requests were coalesced, how many squares
+ * each frame painted, how long painting took and how many boards are open.
+ */
+public final class RenderMetrics implements RenderMetricsMXBean {
+  private final LongAdder invalidated = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder painted = new LongAdder();
+  private final Histogram cellsPerFrame = new Histogram();
+  private final Histogram frameTime = new Histogram();
+  private final LongAdder boards = new LongAdder();
+
+  RenderMetrics() {
+  }
+
+  /**
+   * Records a frame that started at {@code start} and painted {@code cells}
+   * squares, after {@code invalidations} requests to paint since the last
+   * frame, of which {@code coalesced} were merged into other requests.
+   */
+  public void frame(long start, long invalidations, long coalesced, long cells) {
+    if (start != 0) {
+      invalidated.add(invalidations);
+      this.coalesced.add(coalesced);
+      painted.add(cells);
+      frameTime.recordSince(start);
+      cellsPerFrame.record(cells);
+    }
+  }
+
+  public void boardOpened() {
+    boards.increment();
+  }
+
+  public void boardClosed() {
+    boards.decrement();
+  }
+
+  @Override public long getFrameCount() {
+    return frameTime.snapshot().getCount();
+  }
+
+  @Override public long getInvalidatedCount() {
+    return invalidated.sum();
+  }
+
+  @Override public long getCoalescedCount() {
+    return coalesced.sum();
+  }
+
+  @Override public long getPaintedCount() {
+    return painted.sum();
+  }
+
+  @Override public Histogram.Snapshot getCellsPerFrame() {
+    return cellsPerFrame.snapshot();
+  }
+
+  @Override public Histogram.Snapshot getFrameTime() {
+    return frameTime.snapshot();
+  }
+
+  @Override public long getLiveBoardCount() {
+    return boards.sum();
+  }
+
+  @Override public boolean isEnabled() {
+    return Metrics.isEnabled();
+  }
+
+  @Override public void setEnabled(boolean enabled) {
+    Metrics.setEnabled(enabled);
+  }
+
+  @Override public void reset() {
+    invalidated.reset();
+    coalesced.reset();
+    painted.reset();
+    cellsPerFrame.reset();
+    frameTime.reset();
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.metrics;
+
+/**
+ * The JMX view of {@link RenderMetrics}. Frame times are in nanoseconds.
+ */
+public interface RenderMetricsMXBean {
+  long getFrameCount();
+
+  long getInvalidatedCount();
+
+  long getCoalescedCount();
+
+  long getPaintedCount();
+
+  Histogram.Snapshot getCellsPerFrame();
+
+  Histogram.Snapshot getFrameTime();
+
+  long getLiveBoardCount();
+
+  boolean isEnabled();
+
+  void setEnabled(boolean enabled);
+
+  /**
+   * Clears the counters and histograms, but not the live board count.
+   */
+  void reset();
+}
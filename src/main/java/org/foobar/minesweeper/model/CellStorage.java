@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size array of bytes stored in chunks that can be shared between
+ * forks. Forking takes constant time: both storages keep the same chunks and
+ * a chunk is only copied when one of them first writes to it. Chunks that
+ * have never been written share a single read-only chunk of zeros.
+ *
+ * <p>
+ * Ownership is tracked with epochs. Every storage has a unique epoch and a
+ * chunk is writable in place only if it was created under that epoch. Forking
+ * gives both sides new epochs, so every chunk they share becomes read-only to
+ * both of them.
+ */
+final class CellStorage {
+  private static final int SHIFT = 12;
+  private static final int CHUNK_SIZE = 1 << SHIFT;
+  private static final int MASK = CHUNK_SIZE - 1;
+  private static final AtomicLong epochs = new AtomicLong();
+  private static final byte[] ZEROS = new byte[CHUNK_SIZE];
+
+  private final int size;
+  private byte[][] chunks;
+  private long[] owners;
+  private long epoch = epochs.incrementAndGet();
+  private boolean directoryShared;
+
+  CellStorage(int size) {
+    this.size = size;
+
+    int count = (size + MASK) >>> SHIFT;
+    chunks = new byte[count][];
+    owners = new long[count];
+
+    Arrays.fill(chunks, ZEROS);
+  }
+
+  private CellStorage(CellStorage original) {
+    size = original.size;
+    chunks = original.chunks;
+    owners = original.owners;
+    directoryShared = true;
+  }
+
+  int size() {
+    return size;
+  }
+
+  byte get(int index) {
+    return chunks[index >>> SHIFT][index & MASK];
+  }
+
+  void set(int index, byte value) {
+    writable(index >>> SHIFT)[index & MASK] = value;
+  }
+
+  /**
+   * Sets every byte to zero. Chunks this storage owns are cleared in place and
+   * shared chunks are pointed back at the zero chunk, so clearing never
+   * allocates chunks.
+   */
+  void clear() {
+    for (int c = 0; c < chunks.length; c++) {
+      if (owners[c] == epoch) {
+        Arrays.fill(chunks[c], (byte) 0);
+      } else if (chunks[c] != ZEROS) {
+        unshareDirectory();
+        chunks[c] = ZEROS;
+      }
+    }
+  }
+
+  /**
+   * Creates a copy of this storage in constant time.
+   *
+   * @return the copy
+   */
+  CellStorage fork() {
+    directoryShared = true;
+    epoch = epochs.incrementAndGet();
+
+    return new CellStorage(this);
+  }
+
+  /**
+   * Makes every chunk writable in place, copying the ones that are shared.
+   * Afterwards {@code set} no longer changes the chunk directory, so different
+   * threads may set different bytes at the same time.
+   */
+  void own() {
+    for (int c = 0; c < chunks.length; c++) {
+      writable(c);
+    }
+  }
+
+  private byte[] writable(int c) {
+    if (owners[c] != epoch) {
+      unshareDirectory();
+      chunks[c] = Arrays.copyOf(chunks[c], chunkLength(c));
+      owners[c] = epoch;
+    }
+
+    return chunks[c];
+  }
+
+  private void unshareDirectory() {
+    if (directoryShared) {
+      chunks = chunks.clone();
+      owners = owners.clone();
+      directoryShared = false;
+    }
+  }
+
+  private int chunkLength(int c) {
+    return Math.min(CHUNK_SIZE, size - (c << SHIFT));
+  }
+}
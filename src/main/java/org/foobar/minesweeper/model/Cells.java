@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+/**
+ * The layout of a packed cell, shared by the minefields that store one cell
+ * per byte. The low nibble holds the number of nearby mines, bit 4 is the
+ * mine flag and the top three bits hold the ordinal of the cell's
+ * {@code Squares} type.
+ */
+final class Cells {
+  static final int COUNT_MASK = 0x0F;
+  static final int MINE_BIT = 0x10;
+  static final int TYPE_SHIFT = 5;
+  static final int TYPE_MASK = 0xE0;
+  static final Squares[] TYPES = Squares.values();
+
+  private Cells() {
+  }
+}
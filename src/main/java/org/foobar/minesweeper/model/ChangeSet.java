@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Arrays;
+
+/**
+ * The squares changed by a single move on a {@code Minefield}, such as a
+ * cascade, a chord, or the end of a game.
+ *
+ * <p>
+ * A change set is reused by its minefield, so it is only valid for the
+ * duration of the {@code FieldHandler} call it was passed to.
+ */
+public final class ChangeSet {
+  private final int columns;
+  private int[] indices = new int[64];
+  private int size;
+  private int minRow;
+  private int maxRow;
+  private int minColumn;
+  private int maxColumn;
+
+  ChangeSet(int columns) {
+    this.columns = columns;
+    clear();
+  }
+
+  /**
+   * Gets the number of changed squares.
+   *
+   * @return the number of changed squares
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the row of the {@code i}th changed square.
+   *
+   * @param i index into this change set
+   * @return row of the changed square
+   */
+  public int getRow(int i) {
+    return get(i) / columns;
+  }
+
+  /**
+   * Gets the column of the {@code i}th changed square.
+   *
+   * @param i index into this change set
+   * @return column of the changed square
+   */
+  public int getColumn(int i) {
+    return get(i) % columns;
+  }
+
+  /**
+   * Gets the first row of the rectangle bounding every changed square.
+   *
+   * @return the smallest changed row
+   */
+  public int getMinRow() {
+    return minRow;
+  }
+
+  /**
+   * Gets the last row of the rectangle bounding every changed square.
+   *
+   * @return the largest changed row
+   */
+  public int getMaxRow() {
+    return maxRow;
+  }
+
+  /**
+   * Gets the first column of the rectangle bounding every changed square.
+   *
+   * @return the smallest changed column
+   */
+  public int getMinColumn() {
+    return minColumn;
+  }
+
+  /**
+   * Gets the last column of the rectangle bounding every changed square.
+   *
+   * @return the largest changed column
+   */
+  public int getMaxColumn() {
+    return maxColumn;
+  }
+
+  int get(int i) {
+    if (i >= size) {
+      throw new IndexOutOfBoundsException("index " + i + " >= size " + size);
+    }
+
+    return indices[i];
+  }
+
+  void add(int index) {
+    if (size == indices.length) {
+      indices = Arrays.copyOf(indices, size * 2);
+    }
+
+    indices[size++] = index;
+
+    int row = index / columns;
+    int column = index - row * columns;
+
+    minRow = Math.min(minRow, row);
+    maxRow = Math.max(maxRow, row);
+    minColumn = Math.min(minColumn, column);
+    maxColumn = Math.max(maxColumn, column);
+  }
+
+  void clear() {
+    size = 0;
+    minRow = Integer.MAX_VALUE;
+    minColumn = Integer.MAX_VALUE;
+    maxRow = -1;
+    maxColumn = -1;
+  }
+}
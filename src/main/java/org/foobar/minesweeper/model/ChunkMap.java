@@ -0,0 +1,281 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Sparse storage of one byte per square for a board without edges. Squares
+ * are grouped into 64x64 chunks that are created when first written; squares
+ * in missing chunks read as zero.
+ *
+ * <p>
+ * Resident chunks are kept in least recently used order. When there are more
+ * of them than the budget allows, {@link #evict} deflates the oldest chunks
+ * outside a protected rectangle. The compressed bytes are kept in memory up
+ * to a budget of their own; past it, the oldest are written to one file per
+ * chunk in the spill directory, or in a temporary directory if none is set.
+ * Evicted chunks are inflated again when next read or written.
+ */
+final class ChunkMap {
+  static final int SHIFT = 6;
+  static final int SIZE = 1 << SHIFT;
+  private static final int MASK = SIZE - 1;
+
+  private final LongMap<byte[]> resident = new LongMap<>(true);
+  private final LongMap<byte[]> compressed = new LongMap<>(false);
+  private final LongMap<Path> spilled = new LongMap<>(false);
+  private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+  private final Inflater inflater = new Inflater();
+  private int budget = Integer.MAX_VALUE;
+  private long compressedBudget = Long.MAX_VALUE;
+  private long compressedBytes;
+  private Path spillDirectory;
+  private Path temporaryDirectory;
+  private long lastKey;
+  private byte[] last;
+
+  byte get(int row, int column) {
+    byte[] chunk = find(key(row, column), false);
+    return chunk == null ? 0 : chunk[index(row, column)];
+  }
+
+  void set(int row, int column, byte value) {
+    find(key(row, column), true)[index(row, column)] = value;
+  }
+
+  /**
+   * Sets the most chunks to keep uncompressed after an eviction.
+   */
+  void setBudget(int chunks) {
+    budget = chunks;
+  }
+
+  /**
+   * Sets the most bytes of compressed chunks to keep in memory. Chunks past
+   * it are spilled to disk, oldest first.
+   */
+  void setCompressedBudget(long bytes) {
+    compressedBudget = bytes;
+    spill();
+  }
+
+  /**
+   * Sets the directory chunks are spilled to, or null to use a temporary
+   * directory.
+   */
+  void setSpillDirectory(Path directory) {
+    spillDirectory = directory;
+  }
+
+  int getResidentCount() {
+    return resident.size();
+  }
+
+  int getCompressedCount() {
+    return compressed.size();
+  }
+
+  int getSpilledCount() {
+    return spilled.size();
+  }
+
+  /**
+   * Removes every chunk, including evicted ones.
+   */
+  void clear() {
+    resident.clear();
+    compressed.clear();
+    compressedBytes = 0;
+
+    for (long key : spilled.keys()) {
+      try {
+        Files.deleteIfExists(spilled.get(key));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    spilled.clear();
+    last = null;
+  }
+
+  /**
+   * Evicts least recently used chunks until the budget is met, skipping any
+   * chunk that overlaps the given rectangle of squares.
+   */
+  void evict(int firstRow, int firstColumn, int lastRow, int lastColumn) {
+    int minChunkRow = firstRow >> SHIFT;
+    int maxChunkRow = lastRow >> SHIFT;
+    int minChunkColumn = firstColumn >> SHIFT;
+    int maxChunkColumn = lastColumn >> SHIFT;
+
+    if (resident.size() <= budget) {
+      return;
+    }
+
+    for (long key : resident.keys()) {
+      int chunkRow = (int) (key >> 32);
+      int chunkColumn = (int) key;
+
+      if (resident.size() <= budget) {
+        break;
+      } else if (chunkRow >= minChunkRow && chunkRow <= maxChunkRow
+          && chunkColumn >= minChunkColumn && chunkColumn <= maxChunkColumn) {
+        continue;
+      }
+
+      byte[] bytes = deflate(resident.remove(key));
+      compressed.put(key, bytes);
+      compressedBytes += bytes.length;
+
+      if (key == lastKey) {
+        last = null;
+      }
+    }
+
+    spill();
+  }
+
+  private byte[] find(long key, boolean create) {
+    if (last != null && key == lastKey) {
+      return last;
+    }
+
+    byte[] chunk = resident.get(key);
+
+    if (chunk == null) {
+      chunk = load(key);
+
+      if (chunk == null && !create) {
+        return null;
+      } else if (chunk == null) {
+        chunk = new byte[SIZE * SIZE];
+      }
+
+      resident.put(key, chunk);
+    }
+
+    lastKey = key;
+    last = chunk;
+    return chunk;
+  }
+
+  /**
+   * Writes the oldest compressed chunks to disk until the rest fit the
+   * compressed budget.
+   */
+  private void spill() {
+    while (compressedBytes > compressedBudget) {
+      long key = compressed.oldestKey();
+      byte[] bytes = compressed.remove(key);
+
+      try {
+        Path directory = spillDirectory;
+
+        if (directory == null) {
+          if (temporaryDirectory == null) {
+            temporaryDirectory = Files.createTempDirectory("chunks");
+            temporaryDirectory.toFile().deleteOnExit();
+          }
+
+          directory = temporaryDirectory;
+        }
+
+        Path path = directory.resolve((int) (key >> 32) + "_" + (int) key + ".chunk");
+        Files.write(path, bytes);
+        spilled.put(key, path);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      compressedBytes -= bytes.length;
+    }
+  }
+
+  private byte[] load(long key) {
+    byte[] bytes = compressed.remove(key);
+
+    if (bytes != null) {
+      compressedBytes -= bytes.length;
+    } else {
+      Path path = spilled.remove(key);
+
+      if (path == null) {
+        return null;
+      }
+
+      try {
+        bytes = Files.readAllBytes(path);
+        Files.delete(path);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    return inflate(bytes);
+  }
+
+  private byte[] deflate(byte[] chunk) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    byte[] buffer = new byte[512];
+
+    deflater.reset();
+    deflater.setInput(chunk);
+    deflater.finish();
+
+    while (!deflater.finished()) {
+      out.write(buffer, 0, deflater.deflate(buffer));
+    }
+
+    return out.toByteArray();
+  }
+
+  private byte[] inflate(byte[] bytes) {
+    byte[] chunk = new byte[SIZE * SIZE];
+
+    inflater.reset();
+    inflater.setInput(bytes);
+
+    try {
+      int length = 0;
+
+      while (length < chunk.length && !inflater.finished()) {
+        length += inflater.inflate(chunk, length, chunk.length - length);
+      }
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("corrupt chunk", e);
+    }
+
+    return chunk;
+  }
+
+  private static long key(int row, int column) {
+    return ((long) (row >> SHIFT) << 32) | ((column >> SHIFT) & 0xFFFFFFFFL);
+  }
+
+  private static int index(int row, int column) {
+    return ((row & MASK) << SHIFT) | (column & MASK);
+  }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static org.foobar.minesweeper.model.Cells.COUNT_MASK;
+import static org.foobar.minesweeper.model.Cells.MINE_BIT;
+import static org.foobar.minesweeper.model.Cells.TYPES;
+import static org.foobar.minesweeper.model.Cells.TYPE_MASK;
+import static org.foobar.minesweeper.model.Cells.TYPE_SHIFT;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.foobar.minesweeper.model.Minefield.State;
+
+/**
+ * A Minesweeper game that many threads can play at once, such as several
+ * players or bots sharing one large board.
+ *
+ * <p>
+ * Squares are packed one byte each, eight to a 64-bit word, in the same
+ * layout as {@code Minefield}, and every change to a square is a
+ * compare-and-set of its word. Whoever exposes a square owns it, so
+ * cascades that meet simply divide the squares between them and each square
+ * is exposed and counted exactly once. No lock is held while playing; the
+ * only lock places the mines on the first reveal.
+ *
+ * <p>
+ * The game ends with a single compare-and-set of its state, so exactly one
+ * move wins or loses it, and moves made after that do nothing. Cascades
+ * already running when the game ends stop soon after.
+ *
+ * <p>
+ * This class is thread-safe, except that {@link #reset()} must not run
+ * concurrently with moves.
+ */
+public final class ConcurrentMinefield {
+  private static final int STATE_CHECK_INTERVAL = 1 << 12;
+
+  private final int rows;
+  private final int columns;
+  private final int mines;
+  private final Random random;
+  private final Neighbors neighbors;
+  private final AtomicLongArray words;
+  private final AtomicReference<State> state = new AtomicReference<>();
+  private final AtomicInteger unrevealed = new AtomicInteger();
+  private final Object startLock = new Object();
+  private int[] mineSet;
+
+  /**
+   * Creates a {@code ConcurrentMinefield}.
+   *
+   * @param rows the number of rows
+   * @param columns the number of columns
+   * @param mines the number of mines
+   * @throws IllegalArgumentException if {@code rows}, {@code columns}, or
+   *           {@code mines} is not positive, or there are not fewer mines
+   *           than squares
+   */
+  public ConcurrentMinefield(int rows, int columns, int mines) {
+    this(rows, columns, mines, new Random());
+  }
+
+  ConcurrentMinefield(int rows, int columns, int mines, Random random) {
+    checkArgument(rows > 0, "rows must be positive: %s", rows);
+    checkArgument(columns > 0, "columns must be positive: %s", columns);
+    checkArgument(mines > 0, "mines must be positive: %s", mines);
+    checkArgument(mines < (long) rows * columns,
+        "mines must be fewer than the number of squares: %s", mines);
+
+    this.rows = rows;
+    this.columns = columns;
+    this.mines = mines;
+    this.random = random;
+
+    int size = Math.multiplyExact(rows, columns);
+    words = new AtomicLongArray((size + 7) >>> 3);
+    neighbors = new Neighbors(rows, columns);
+
+    reset();
+  }
+
+  public int getRowCount() {
+    return rows;
+  }
+
+  public int getColumnCount() {
+    return columns;
+  }
+
+  public int getMines() {
+    return mines;
+  }
+
+  public State getState() {
+    return state.get();
+  }
+
+  public boolean isGameOver() {
+    State current = state.get();
+    return current == State.LOST || current == State.WON;
+  }
+
+  /**
+   * Gets the number of squares without mines that are still covered.
+   */
+  public int getUnrevealedCount() {
+    return unrevealed.get();
+  }
+
+  public Squares getType(int row, int column) {
+    return TYPES[(cell(index(row, column)) & TYPE_MASK) >>> TYPE_SHIFT];
+  }
+
+  public int getMineCount(int row, int column) {
+    return cell(index(row, column)) & COUNT_MASK;
+  }
+
+  /**
+   * Starts a new game. Must not be called while moves are in progress.
+   */
+  public void reset() {
+    synchronized (startLock) {
+      for (int i = 0; i < words.length(); i++) {
+        words.set(i, 0);
+      }
+
+      mineSet = null;
+      unrevealed.set(rows * columns - mines);
+      state.set(State.START);
+    }
+  }
+
+  /**
+   * Flags or unflags a covered square. Does nothing once the game is over.
+   */
+  public void toggleFlag(int row, int column) {
+    int index = index(row, column);
+
+    while (!isGameOver()) {
+      Squares type = type(cell(index));
+
+      if (type == Squares.BLANK) {
+        if (compareAndSetType(index, Squares.BLANK, Squares.FLAG)) {
+          // A flag that lands after the game ended would escape the
+          // reveal of wrong flags; take it back.
+          if (isGameOver()) {
+            compareAndSetType(index, Squares.FLAG, Squares.BLANK);
+          }
+
+          return;
+        }
+      } else if (type == Squares.FLAG) {
+        if (compareAndSetType(index, Squares.FLAG, Squares.BLANK)) {
+          return;
+        }
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Reveals a square, cascading if it has no nearby mines. The first reveal
+   * of a game places the mines and is never a mine.
+   */
+  public void reveal(int row, int column) {
+    reveal(index(row, column));
+  }
+
+  /**
+   * Reveals the covered neighbors of an exposed number whose mines are all
+   * flagged.
+   */
+  public void revealNearby(int row, int column) {
+    int index = index(row, column);
+
+    if (isGameOver() || type(cell(index)) != Squares.EXPOSED) {
+      return;
+    }
+
+    int[] offsets = neighbors.offsets(index);
+    int flags = 0;
+
+    for (int offset : offsets) {
+      if (type(cell(index + offset)) == Squares.FLAG) {
+        flags++;
+      }
+    }
+
+    if (flags == (cell(index) & COUNT_MASK)) {
+      for (int offset : offsets) {
+        reveal(index + offset);
+      }
+    }
+  }
+
+  boolean isMine(int row, int column) {
+    return (cell(index(row, column)) & MINE_BIT) != 0;
+  }
+
+  private void reveal(int index) {
+    if (type(cell(index)) != Squares.BLANK) {
+      return;
+    }
+
+    if (state.get() == State.START) {
+      start(index);
+    }
+
+    if (state.get() != State.PLAYING) {
+      return;
+    }
+
+    if ((cell(index) & MINE_BIT) != 0) {
+      if (state.compareAndSet(State.PLAYING, State.LOST)) {
+        onGameLost(index);
+      }
+    } else if (compareAndSetType(index, Squares.BLANK, Squares.EXPOSED)) {
+      int exposed = flood(index);
+
+      if (unrevealed.addAndGet(-exposed) == 0 && state.compareAndSet(State.PLAYING, State.WON)) {
+        for (int mine : mineSet) {
+          setType(mine, Squares.FLAG);
+        }
+      }
+    }
+  }
+
+  /**
+   * Places the mines, keeping {@code first} clear. Reveals that arrive
+   * meanwhile wait here; flags may still be toggled, as placing the mines
+   * only touches the other bits of a square.
+   */
+  private void start(int first) {
+    synchronized (startLock) {
+      if (state.get() != State.START) {
+        return;
+      }
+
+      int size = rows * columns;
+      int[] placed = new int[mines];
+
+      // Floyd's algorithm over the squares other than the first. Squares
+      // already chosen are recognised by their mine bit.
+      for (int j = size - 1 - mines, i = 0; j < size - 1; j++, i++) {
+        int cell = skip(first, random.nextInt(j + 1));
+
+        if ((cell(cell) & MINE_BIT) != 0) {
+          cell = skip(first, j);
+        }
+
+        add(cell, MINE_BIT);
+        placed[i] = cell;
+      }
+
+      for (int mine : placed) {
+        for (int offset : neighbors.offsets(mine)) {
+          add(mine + offset, 1);
+        }
+      }
+
+      mineSet = placed;
+      state.set(State.PLAYING);
+    }
+  }
+
+  private void onGameLost(int hit) {
+    for (int i = 0; i < rows * columns; i++) {
+      int cell = cell(i);
+
+      if ((cell & MINE_BIT) != 0) {
+        setType(i, i == hit ? Squares.HITMINE : Squares.MINE);
+      } else if (type(cell) == Squares.FLAG) {
+        compareAndSetType(i, Squares.FLAG, Squares.WRONGMINE);
+      }
+    }
+  }
+
+  /**
+   * Exposes everything reachable from {@code start}, which this thread has
+   * just exposed, through squares without nearby mines. Squares are claimed
+   * one compare-and-set at a time, so concurrent cascades never expose a
+   * square twice.
+   *
+   * @return the number of squares this call exposed
+   */
+  private int flood(int start) {
+    int[] queue = new int[64];
+    int size = 0;
+    queue[size++] = start;
+
+    for (int head = 0; head < size; head++) {
+      int index = queue[head];
+
+      if (head % STATE_CHECK_INTERVAL == 0 && state.get() != State.PLAYING) {
+        break;
+      }
+
+      if ((cell(index) & COUNT_MASK) != 0) {
+        continue;
+      }
+
+      for (int offset : neighbors.offsets(index)) {
+        int neighbor = index + offset;
+
+        if (expose(neighbor)) {
+          if (size == queue.length) {
+            queue = Arrays.copyOf(queue, size * 2);
+          }
+
+          queue[size++] = neighbor;
+        }
+      }
+    }
+
+    return size;
+  }
+
+  /**
+   * Exposes a covered or flagged square without a mine.
+   *
+   * @return true if this call exposed it
+   */
+  private boolean expose(int index) {
+    return compareAndSetType(index, Squares.BLANK, Squares.EXPOSED)
+        || compareAndSetType(index, Squares.FLAG, Squares.EXPOSED);
+  }
+
+  private int index(int row, int column) {
+    checkElementIndex(row, rows);
+    checkElementIndex(column, columns);
+
+    return row * columns + column;
+  }
+
+  private int cell(int index) {
+    return (int) (words.get(index >>> 3) >>> ((index & 7) << 3)) & 0xFF;
+  }
+
+  private static Squares type(int cell) {
+    return TYPES[(cell & TYPE_MASK) >>> TYPE_SHIFT];
+  }
+
+  /**
+   * Changes the type of a square from {@code expect} to {@code update}.
+   *
+   * @return false if the square was not of type {@code expect}
+   */
+  private boolean compareAndSetType(int index, Squares expect, Squares update) {
+    int word = index >>> 3;
+    int shift = (index & 7) << 3;
+
+    while (true) {
+      long current = words.get(word);
+      int cell = (int) (current >>> shift) & 0xFF;
+
+      if (type(cell) != expect) {
+        return false;
+      }
+
+      int next = (cell & ~TYPE_MASK) | (update.ordinal() << TYPE_SHIFT);
+
+      if (words.compareAndSet(word, current, replace(current, shift, next))) {
+        return true;
+      }
+    }
+  }
+
+  private void setType(int index, Squares type) {
+    int word = index >>> 3;
+    int shift = (index & 7) << 3;
+
+    while (true) {
+      long current = words.get(word);
+      int cell = (int) (current >>> shift) & 0xFF;
+      int next = (cell & ~TYPE_MASK) | (type.ordinal() << TYPE_SHIFT);
+
+      if (words.compareAndSet(word, current, replace(current, shift, next))) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Adds to the low bits of a square; used for the mine bit and counts,
+   * which never carry into the type.
+   */
+  private void add(int index, int delta) {
+    int word = index >>> 3;
+    int shift = (index & 7) << 3;
+
+    words.getAndAdd(word, (long) delta << shift);
+  }
+
+  private static long replace(long word, int shift, int cell) {
+    return (word & ~(0xFFL << shift)) | ((long) cell << shift);
+  }
+
+  private static int skip(int first, int candidate) {
+    return candidate < first ? candidate : candidate + 1;
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.foobar.minesweeper.model.Minefield.FieldHandler;
+import org.foobar.minesweeper.model.Minefield.State;
+
+/**
+ * Records the moves made on a {@code Minefield} to an append-only file, from
+ * which {@link Replay} can play the games again exactly.
+ *
+ * <p>
+ * The file starts with a header holding the board size and the number of
+ * mines. Each record that follows is a one-byte kind and its operand: the
+ * square of a move, or how a game's mines were placed, written just before
+ * the move that placed them. A game placed by the default layout is
+ * recorded by its seed. A game placed by a {@code MineLayout} is recorded
+ * by the squares of its mines, because a layout need not follow the seed.
+ * A new game is a record of its own.
+ *
+ * <p>
+ * Moves are appended to a buffer in memory and written by a background
+ * thread at most {@link #FLUSH_INTERVAL_MILLIS} later, so recording costs a
+ * move only a few bytes of copying. Records still buffered are lost if the
+ * process dies; {@link #close()} writes them.
+ */
+public final class Journal implements Closeable {
+  /** How long a record may stay buffered before it is written. */
+  public static final long FLUSH_INTERVAL_MILLIS = 100;
+
+  static final int MAGIC = 0x4A524E4C;
+  static final short VERSION = 1;
+  static final int HEADER_SIZE = 20;
+  static final byte RESET = 0;
+  static final byte SEED = 1;
+  static final byte REVEAL = 2;
+  static final byte TOGGLE_FLAG = 3;
+  static final byte REVEAL_NEARBY = 4;
+  static final byte LAYOUT = 5;
+
+  private final Minefield field;
+  private final FileChannel channel;
+  private final HandlerRegistration registration;
+  private final ScheduledExecutorService writer;
+  private final Object writeLock = new Object();
+  private ByteBuffer pending = ByteBuffer.allocate(4096);
+  private ByteBuffer spare = ByteBuffer.allocate(4096);
+  private boolean scheduled;
+  private boolean attached;
+  private boolean started;
+  private IOException failure;
+
+  private Journal(Minefield field, FileChannel channel) {
+    this.field = field;
+    this.channel = channel;
+
+    writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "journal-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    registration = field.addFieldHandler(new FieldHandler() {
+      @Override public void updateSquare(Square square) {
+      }
+
+      @Override public void updateSquares(ChangeSet changes) {
+      }
+
+      @Override public void updateBoard() {
+        // Also called when a handler is added, which is harmless to replay
+        // only before the first move.
+        if (attached && field.getState() == State.START) {
+          append(RESET, 0, 0);
+        }
+      }
+
+      @Override public void changeState(State state) {
+        if (state == State.PLAYING) {
+          started = true;
+        }
+      }
+
+      @Override public void moveMade(Move move, Square square) {
+        onMove(move, square);
+      }
+    });
+
+    attached = true;
+  }
+
+  /**
+   * Starts recording the moves made on {@code field} to a new file.
+   *
+   * @param field a game whose first square is yet to be revealed
+   * @param path the file to write, replaced if it exists
+   * @return the journal, which must be closed to write the last moves
+   * @throws IllegalStateException if the game has already started
+   */
+  public static Journal record(Minefield field, Path path) throws IOException {
+    checkState(field.getState() == State.START, "journal must start before the first move");
+
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+    header.putInt(MAGIC)
+        .putShort(VERSION)
+        .putShort((short) 0)
+        .putInt(field.getRowCount())
+        .putInt(field.getColumnCount())
+        .putInt(field.getMines())
+        .flip();
+
+    try {
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    return new Journal(field, channel);
+  }
+
+  /**
+   * Stops recording and writes every buffered record.
+   *
+   * @throws IOException if a record could not be written, now or earlier
+   */
+  @Override public void close() throws IOException {
+    registration.removeHandler();
+    writer.shutdown();
+
+    try {
+      writer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void onMove(Move move, Square square) {
+    int index = square.getIndex();
+
+    // A move that started a game placed its mines.
+    if (started) {
+      started = false;
+
+      if (field.hasLayout()) {
+        appendLayout(field.getMinePositions());
+      } else {
+        append(SEED, 0, field.getSeed());
+      }
+    }
+
+    switch (move) {
+    case REVEAL:
+      append(REVEAL, index, 0);
+      break;
+    case TOGGLE_FLAG:
+      append(TOGGLE_FLAG, index, 0);
+      break;
+    default:
+      append(REVEAL_NEARBY, index, 0);
+    }
+  }
+
+  private synchronized void append(byte kind, int index, long value) {
+    reserve(9);
+    pending.put(kind);
+
+    if (kind == SEED) {
+      pending.putLong(value);
+    } else if (kind != RESET) {
+      pending.putInt(index);
+    }
+
+    schedule();
+  }
+
+  private synchronized void appendLayout(int[] mines) {
+    reserve(5 + 4 * mines.length);
+    pending.put(LAYOUT).putInt(mines.length);
+
+    for (int mine : mines) {
+      pending.putInt(mine);
+    }
+
+    schedule();
+  }
+
+  private void reserve(int bytes) {
+    if (pending.remaining() < bytes) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+          pending.position() + bytes));
+      pending.flip();
+      grown.put(pending);
+      pending = grown;
+    }
+  }
+
+  private void schedule() {
+    if (!scheduled && !writer.isShutdown()) {
+      scheduled = true;
+      writer.schedule(this::flushQuietly, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (IOException e) {
+      failure = e;
+    }
+  }
+
+  /**
+   * Writes the buffered records. Records appended meanwhile go to the spare
+   * buffer, so the move path never waits for the disk.
+   */
+  private void flush() throws IOException {
+    synchronized (writeLock) {
+      ByteBuffer full;
+
+      synchronized (this) {
+        full = pending;
+        pending = spare;
+        spare = full;
+        scheduled = false;
+      }
+
+      full.flip();
+
+      try {
+        while (full.hasRemaining()) {
+          channel.write(full);
+        }
+      } finally {
+        full.clear();
+      }
+    }
+  }
+}
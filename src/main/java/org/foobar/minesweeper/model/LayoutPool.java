@@ -0,0 +1,415 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps layouts from a slower {@code MineLayout} ready ahead of time, so the
+ * first click of a new game does not wait for them.
+ *
+ * <p>
+ * Layouts are pooled by board size and number of mines, and generated by a
+ * low-priority background thread. Each is made for an anchor square, the
+ * square the last game of that size was started from, or the center of the
+ * board at first. A pooled layout can start any game whose first click
+ * lands in the opening around its anchor, the squares without nearby mines
+ * that the anchor would expose, because that click exposes exactly the
+ * same squares. Other clicks miss the pool and are passed to the source.
+ *
+ * <p>
+ * A hit therefore always starts the game on an opening. That matches a
+ * source like {@code NoGuessGenerator}, whose games open on the first click
+ * anyway, but it would bias a uniform placement, and uniform placement is
+ * cheap enough not to need a pool.
+ *
+ * <p>
+ * The pool keeps at most {@link #setCapacity(int) capacity} layouts per size
+ * and stays within a memory budget, dropping the layouts of the least
+ * recently used sizes first.
+ *
+ * <p>
+ * A pooled layout is made ahead of time with the pool's own randomness, not
+ * with the {@code Random} passed to {@link #place}. A game started from the
+ * pool can therefore not be recreated from its seed; record its mines
+ * instead, as {@code Journal} does.
+ *
+ * <p>
+ * This class is thread-safe.
+ */
+public final class LayoutPool implements MineLayout {
+  private final MineLayout source;
+  private final ExecutorService executor;
+  private final Random random = new Random();
+  private final Map<Key, Boards> pool = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private int capacity = 8;
+  private long memoryBudget = 16 << 20;
+  private long memoryUse;
+  private boolean filling;
+
+  /**
+   * Creates a {@code LayoutPool}.
+   *
+   * @param source the layout to pool
+   */
+  public LayoutPool(MineLayout source) {
+    this.source = checkNotNull(source);
+
+    executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "layout-pool");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+  }
+
+  /**
+   * Sets the number of layouts kept ready for each board size. The default
+   * is 8.
+   *
+   * @return this pool
+   */
+  public synchronized LayoutPool setCapacity(int capacity) {
+    checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+    this.capacity = capacity;
+    fill();
+    return this;
+  }
+
+  /**
+   * Sets the memory the pooled layouts may use. The default is 16 MB.
+   *
+   * @param bytes the budget in bytes
+   * @return this pool
+   */
+  public synchronized LayoutPool setMemoryBudget(long bytes) {
+    checkArgument(bytes > 0, "bytes must be positive: %s", bytes);
+    this.memoryBudget = bytes;
+    trim(null);
+    return this;
+  }
+
+  /**
+   * Starts preparing layouts for a board size, typically when a game of
+   * that size is created or reset.
+   */
+  public synchronized void prefetch(int rows, int columns, int mines) {
+    boards(new Key(rows, columns, mines));
+    fill();
+  }
+
+  /**
+   * Takes a pooled layout whose opening contains {@code first}, or asks the
+   * source for one. {@code random} is only used on a miss.
+   */
+  @Override public int[] place(int rows, int columns, int mines, int first, Random random) {
+    int[] placed = null;
+
+    synchronized (this) {
+      Boards boards = boards(new Key(rows, columns, mines));
+      boards.anchor = first;
+
+      for (Iterator<Board> i = boards.ready.iterator(); i.hasNext(); ) {
+        Board board = i.next();
+
+        if (board.opening.get(first)) {
+          i.remove();
+          memoryUse -= board.bytes();
+          placed = board.mines;
+          break;
+        }
+      }
+
+      fill();
+    }
+
+    if (placed != null) {
+      hits.incrementAndGet();
+      return placed;
+    }
+
+    misses.incrementAndGet();
+    return source.place(rows, columns, mines, first, random);
+  }
+
+  /**
+   * Gets the number of games started from a pooled layout.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of games whose layout had to be made on demand.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Gets the number of layouts ready for the given board size.
+   */
+  public synchronized int getReadyCount(int rows, int columns, int mines) {
+    Boards boards = pool.get(new Key(rows, columns, mines));
+    return boards == null ? 0 : boards.ready.size();
+  }
+
+  /**
+   * Gets the memory the pooled layouts use.
+   *
+   * @return an estimate in bytes
+   */
+  public synchronized long getMemoryUse() {
+    return memoryUse;
+  }
+
+  /**
+   * Stops the background thread. Layouts are made on demand afterwards.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private Boards boards(Key key) {
+    Boards boards = pool.get(key);
+
+    if (boards == null) {
+      boards = new Boards(key);
+      pool.put(key, boards);
+    }
+
+    return boards;
+  }
+
+  /**
+   * Starts the background thread if a size is short of layouts.
+   */
+  private void fill() {
+    if (!filling && !executor.isShutdown() && next() != null) {
+      filling = true;
+      executor.execute(this::run);
+    }
+  }
+
+  /**
+   * Finds the most recently used size that is short of layouts.
+   */
+  private Boards next() {
+    Boards next = null;
+
+    for (Boards boards : pool.values()) {
+      if (boards.ready.size() < capacity) {
+        next = boards;
+      }
+    }
+
+    return next;
+  }
+
+  private void run() {
+    while (true) {
+      Boards boards;
+      int anchor;
+
+      synchronized (this) {
+        boards = next();
+
+        if (boards == null || Thread.currentThread().isInterrupted()) {
+          filling = false;
+          return;
+        }
+
+        anchor = boards.anchor;
+      }
+
+      Key key = boards.key;
+      int[] mines;
+
+      try {
+        mines = source.place(key.rows, key.columns, key.mines, anchor, random);
+      } catch (RuntimeException e) {
+        synchronized (this) {
+          filling = false;
+        }
+
+        throw e;
+      }
+
+      Board board = new Board(mines, opening(boards, mines, anchor));
+
+      synchronized (this) {
+        if (pool.get(key) != boards) {
+          continue;
+        }
+
+        memoryUse += board.bytes();
+        boards.ready.add(board);
+
+        if (!trim(boards)) {
+          filling = false;
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops layouts, least recently used sizes first, until the pool fits its
+   * memory budget. The layouts of {@code keep} are dropped last, newest
+   * first.
+   *
+   * @return false if {@code keep} itself had to give up layouts
+   */
+  private boolean trim(Boards keep) {
+    for (Iterator<Boards> i = pool.values().iterator(); i.hasNext()
+        && memoryUse > memoryBudget; ) {
+      Boards boards = i.next();
+
+      if (boards != keep) {
+        for (Board board : boards.ready) {
+          memoryUse -= board.bytes();
+        }
+
+        i.remove();
+      }
+    }
+
+    boolean kept = true;
+
+    while (memoryUse > memoryBudget && keep != null && !keep.ready.isEmpty()) {
+      memoryUse -= keep.ready.removeLast().bytes();
+      kept = false;
+    }
+
+    return kept;
+  }
+
+  /**
+   * Finds the squares without nearby mines that revealing {@code anchor}
+   * would expose, or only the anchor if it has nearby mines.
+   */
+  private static BitSet opening(Boards boards, int[] mines, int anchor) {
+    Neighbors neighbors = boards.neighbors;
+    BitSet mined = new BitSet();
+    BitSet visited = new BitSet();
+    BitSet opening = new BitSet();
+    int[] queue = new int[boards.key.rows * boards.key.columns];
+    int size = 0;
+
+    for (int mine : mines) {
+      mined.set(mine);
+    }
+
+    opening.set(anchor);
+    visited.set(anchor);
+    queue[size++] = anchor;
+
+    for (int head = 0; head < size; head++) {
+      int index = queue[head];
+      boolean clear = true;
+
+      for (int offset : neighbors.offsets(index)) {
+        if (mined.get(index + offset)) {
+          clear = false;
+          break;
+        }
+      }
+
+      if (!clear) {
+        continue;
+      }
+
+      opening.set(index);
+
+      for (int offset : neighbors.offsets(index)) {
+        int neighbor = index + offset;
+
+        if (!visited.get(neighbor)) {
+          visited.set(neighbor);
+          queue[size++] = neighbor;
+        }
+      }
+    }
+
+    return opening;
+  }
+
+  private static final class Key {
+    final int rows;
+    final int columns;
+    final int mines;
+
+    Key(int rows, int columns, int mines) {
+      this.rows = rows;
+      this.columns = columns;
+      this.mines = mines;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+
+      Key other = (Key) obj;
+      return rows == other.rows && columns == other.columns && mines == other.mines;
+    }
+
+    @Override public int hashCode() {
+      return (rows * 31 + columns) * 31 + mines;
+    }
+  }
+
+  private static final class Boards {
+    final Key key;
+    final Neighbors neighbors;
+    final ArrayDeque<Board> ready = new ArrayDeque<>();
+    int anchor;
+
+    Boards(Key key) {
+      this.key = key;
+      this.neighbors = new Neighbors(key.rows, key.columns);
+      this.anchor = (key.rows / 2) * key.columns + key.columns / 2;
+    }
+  }
+
+  private static final class Board {
+    final int[] mines;
+    final BitSet opening;
+
+    Board(int[] mines, BitSet opening) {
+      this.mines = mines;
+      this.opening = opening;
+    }
+
+    long bytes() {
+      return 4L * mines.length + opening.size() / 8 + 64;
+    }
+  }
+}
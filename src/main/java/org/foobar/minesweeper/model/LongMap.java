@@ -0,0 +1,288 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map from {@code long} keys to non-null values that does not box its
+ * keys. Entries are linked in insertion order or, if the map is access
+ * ordered, in the order they were last read or written, so the oldest can be
+ * found in constant time.
+ *
+ * <p>
+ * Keys live in an open-addressed table with linear probing, and removal
+ * shifts later entries back instead of leaving tombstones.
+ */
+final class LongMap<V> {
+  private static final int NONE = -1;
+
+  private final boolean accessOrder;
+  private long[] keys;
+  private Object[] values;
+  private int[] before;
+  private int[] after;
+  private int shift;
+  private int size;
+  private int head = NONE;
+  private int tail = NONE;
+
+  /**
+   * @param accessOrder true to move entries to the end of the order when they
+   *          are read or written, false to keep insertion order
+   */
+  LongMap(boolean accessOrder) {
+    this.accessOrder = accessOrder;
+    allocate(16);
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  V get(long key) {
+    int slot = find(key);
+
+    if (slot < 0) {
+      return null;
+    }
+
+    if (accessOrder) {
+      moveToEnd(slot);
+    }
+
+    return value(slot);
+  }
+
+  /**
+   * @return the previous value, or null if there was none
+   */
+  V put(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+
+    int slot = find(key);
+
+    if (slot >= 0) {
+      V previous = value(slot);
+      values[slot] = value;
+
+      if (accessOrder) {
+        moveToEnd(slot);
+      }
+
+      return previous;
+    }
+
+    if (size + 1 > values.length >> 1) {
+      allocate(values.length << 1);
+    }
+
+    insert(key, value);
+    return null;
+  }
+
+  /**
+   * @return the removed value, or null if there was none
+   */
+  V remove(long key) {
+    int slot = find(key);
+
+    if (slot < 0) {
+      return null;
+    }
+
+    V value = value(slot);
+    delete(slot);
+    return value;
+  }
+
+  /**
+   * Gets the key that comes first in the order.
+   *
+   * @throws NoSuchElementException if the map is empty
+   */
+  long oldestKey() {
+    if (head == NONE) {
+      throw new NoSuchElementException();
+    }
+
+    return keys[head];
+  }
+
+  /**
+   * Gets the keys in order, oldest first.
+   */
+  long[] keys() {
+    long[] result = new long[size];
+    int i = 0;
+
+    for (int slot = head; slot != NONE; slot = after[slot]) {
+      result[i++] = keys[slot];
+    }
+
+    return result;
+  }
+
+  void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+    head = NONE;
+    tail = NONE;
+  }
+
+  @SuppressWarnings("unchecked")
+  private V value(int slot) {
+    return (V) values[slot];
+  }
+
+  private int home(long key) {
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+
+  private int find(long key) {
+    int mask = values.length - 1;
+
+    for (int slot = home(key); values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+    }
+
+    return NONE;
+  }
+
+  private void insert(long key, Object value) {
+    int mask = values.length - 1;
+    int slot = home(key);
+
+    while (values[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = key;
+    values[slot] = value;
+    link(slot);
+    size++;
+  }
+
+  /**
+   * Empties a slot and shifts back the entries after it that would no
+   * longer be found past the gap.
+   */
+  private void delete(int slot) {
+    int mask = values.length - 1;
+
+    unlink(slot);
+    values[slot] = null;
+    size--;
+
+    for (int gap = slot, next = (slot + 1) & mask; values[next] != null;
+        next = (next + 1) & mask) {
+      // The entry may move into the gap unless its home lies cyclically
+      // after the gap, up to its own slot.
+      if (((next - home(keys[next])) & mask) >= ((next - gap) & mask)) {
+        move(next, gap);
+        gap = next;
+      }
+    }
+  }
+
+  private void move(int from, int to) {
+    keys[to] = keys[from];
+    values[to] = values[from];
+    before[to] = before[from];
+    after[to] = after[from];
+    values[from] = null;
+
+    if (before[to] == NONE) {
+      head = to;
+    } else {
+      after[before[to]] = to;
+    }
+
+    if (after[to] == NONE) {
+      tail = to;
+    } else {
+      before[after[to]] = to;
+    }
+  }
+
+  private void link(int slot) {
+    before[slot] = tail;
+    after[slot] = NONE;
+
+    if (tail == NONE) {
+      head = slot;
+    } else {
+      after[tail] = slot;
+    }
+
+    tail = slot;
+  }
+
+  private void unlink(int slot) {
+    if (before[slot] == NONE) {
+      head = after[slot];
+    } else {
+      after[before[slot]] = after[slot];
+    }
+
+    if (after[slot] == NONE) {
+      tail = before[slot];
+    } else {
+      before[after[slot]] = before[slot];
+    }
+  }
+
+  private void moveToEnd(int slot) {
+    if (slot != tail) {
+      unlink(slot);
+      link(slot);
+    }
+  }
+
+  /**
+   * Replaces the table with one of {@code capacity} slots, reinserting the
+   * entries in order.
+   */
+  private void allocate(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    int[] oldAfter = after;
+    int first = head;
+
+    keys = new long[capacity];
+    values = new Object[capacity];
+    before = new int[capacity];
+    after = new int[capacity];
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    size = 0;
+    head = NONE;
+    tail = NONE;
+
+    for (int slot = first; oldValues != null && slot != NONE; slot = oldAfter[slot]) {
+      insert(oldKeys[slot], oldValues[slot]);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Random;
+
+/**
+ * Chooses where the mines of a {@code Minefield} go. The layout is asked
+ * when the first square of a game is revealed, so it can keep that square
+ * safe.
+ */
+@FunctionalInterface
+public interface MineLayout {
+  /**
+   * Places the mines of a new game.
+   *
+   * @param rows the number of rows of the board
+   * @param columns the number of columns of the board
+   * @param mines the number of mines to place
+   * @param first the index ({@code row * columns + column}) of the square
+   *          revealed first, which must not be a mine
+   * @param random the game's source of randomness
+   * @return the distinct indices of the {@code mines} squares holding a mine
+   */
+  int[] place(int rows, int columns, int mines, int first, Random random);
+}
@@ -18,12 +18,24 @@ package org.foobar.minesweeper.model;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+import static org.foobar.minesweeper.model.Cells.COUNT_MASK;
+import static org.foobar.minesweeper.model.Cells.MINE_BIT;
+import static org.foobar.minesweeper.model.Cells.TYPES;
+import static org.foobar.minesweeper.model.Cells.TYPE_MASK;
+import static org.foobar.minesweeper.model.Cells.TYPE_SHIFT;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import org.foobar.minesweeper.jfr.CascadeEvent;
+import org.foobar.minesweeper.jfr.ChordEvent;
+import org.foobar.minesweeper.jfr.FirstClickEvent;
+import org.foobar.minesweeper.jfr.GameLostEvent;
+import org.foobar.minesweeper.jfr.RevealEvent;
+import org.foobar.minesweeper.metrics.Metrics;
 
 /**
  * Provides a model for a Minesweeper game. Objects that wish to be notified
@@ -39,10 +51,25 @@ public final class Minefield {
   private final int mines;
   private int unrevealed;
   private State state;
-  private final Square[][] table;
+  private long seed;
+  private long nextSeed;
+  private boolean nextSeedSet;
+  // One byte per square, packed as described in Cells.
+  private final CellStorage cells;
   private final List<FieldHandler> handlers = new CopyOnWriteArrayList<>();
-  private final List<Square> mineSet = new ArrayList<>();
+  private int[] mineSet;
+  private boolean mineSetShared;
   private final Random random;
+  private MineLayout layout;
+  private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+  private boolean instrumented = true;
+  private final Neighbors neighbors;
+  private final ChangeSet changes;
+
+  // Boards with at least this many squares flood large cascades in parallel,
+  // once the sequential flood has exposed PARALLEL_SPLIT squares.
+  private static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 22;
+  private static final int PARALLEL_SPLIT = 1 << 14;
 
   /**
    * Creates a {@code Minefield}.
@@ -63,17 +90,44 @@ public final class Minefield {
     checkArgument(rows > 0, "rows must be positive: %s", rows);
     checkArgument(columns > 0, "columns must be positive: %s", columns);
     checkArgument(mines > 0, "mines must be positive: %s", mines);
+    checkArgument(mines < (long) rows * columns,
+        "mines must be fewer than the number of squares: %s", mines);
 
     this.rows = rows;
     this.columns = columns;
     this.mines = mines;
     this.random = random;
 
-    table = new Square[rows][columns];
+    cells = new CellStorage(Math.multiplyExact(rows, columns));
+    neighbors = new Neighbors(rows, columns);
+    mineSet = new int[mines];
+    changes = new ChangeSet(columns);
 
     reset();
   }
 
+  private Minefield(Minefield original) {
+    rows = original.rows;
+    columns = original.columns;
+    mines = original.mines;
+    unrevealed = original.unrevealed;
+    state = original.state;
+    seed = original.seed;
+    // Seeding from the original would advance its random source, making its
+    // later games depend on when it was forked.
+    random = new Random();
+    layout = original.layout;
+    parallelThreshold = original.parallelThreshold;
+    instrumented = original.instrumented;
+    cells = original.cells.fork();
+    neighbors = original.neighbors;
+    mineSet = original.mineSet;
+    changes = new ChangeSet(columns);
+
+    mineSetShared = true;
+    original.mineSetShared = true;
+  }
+
   /**
    * Adds a handler for Minefield events.
    *
@@ -81,11 +135,94 @@ public final class Minefield {
    * @return {@code HandlerRegistration} used to remove this handler
    */
   public HandlerRegistration addFieldHandler(final FieldHandler handler) {
+    final boolean counted = instrumented;
     handlers.add(handler);
 
+    if (counted) {
+      Metrics.game().handlerAdded();
+    }
+
     updateBoard();
 
-    return () -> handlers.remove(handler);
+    return () -> {
+      if (handlers.remove(handler) && counted) {
+        Metrics.game().handlerRemoved();
+      }
+    };
+  }
+
+  /**
+   * Creates an independent copy of this game, in the same state but without
+   * any handlers. The copy takes constant time and shares the board with this
+   * minefield; each part of the board is only copied when one of the two
+   * games first changes it. The copy draws the seeds of its later games from
+   * a random source of its own.
+   *
+   * @return the copy
+   */
+  public Minefield fork() {
+    return new Minefield(this);
+  }
+
+  /**
+   * Sets how the mines of later games are placed. The default, {@code null},
+   * places them uniformly at random on any square but the first revealed.
+   * The current game is not affected unless its first square is yet to be
+   * revealed.
+   *
+   * @param layout the layout, or {@code null} for the default
+   */
+  public void setLayout(MineLayout layout) {
+    this.layout = layout;
+  }
+
+  /**
+   * Sets whether this game's moves are counted in {@code Metrics} and
+   * emitted as Flight Recorder events. The default is true. Games played by
+   * the program itself rather than by a player, such as the probes of a
+   * layout generator or simulated games, should turn it off.
+   *
+   * @param instrumented whether to report this game's moves
+   */
+  public void setInstrumented(boolean instrumented) {
+    this.instrumented = instrumented;
+  }
+
+  /**
+   * Sets the board size from which cascades run on the common fork-join pool.
+   * A cascade on such a board starts sequentially and only splits into tiles
+   * once it has exposed a few thousand squares, so small cascades cost the
+   * same as before. The default is 4,194,304 squares.
+   *
+   * @param squares the smallest board, in squares, to flood in parallel
+   * @throws IllegalArgumentException if {@code squares} is not positive
+   */
+  public void setParallelThreshold(int squares) {
+    checkArgument(squares > 0, "threshold must be positive: %s", squares);
+    parallelThreshold = squares;
+  }
+
+  /**
+   * Gets the seed the mines of this game were placed with. Placing the mines
+   * again with the same seed and first square gives the same layout, unless
+   * a {@code MineLayout} that ignores its random source is set.
+   *
+   * @return the seed, or 0 if the first square is yet to be revealed
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Sets the seed the mines of the next game are placed with, instead of a
+   * random one. The next game is the current one if its first square is yet
+   * to be revealed.
+   *
+   * @param seed the seed
+   */
+  public void setNextSeed(long seed) {
+    nextSeed = seed;
+    nextSeedSet = true;
   }
 
   /**
@@ -139,7 +276,7 @@ public final class Minefield {
     checkElementIndex(row, rows);
     checkElementIndex(column, columns);
 
-    return table[row][column];
+    return new Square(this, row, column);
   }
 
   /**
@@ -155,108 +292,455 @@ public final class Minefield {
    * Resets the Minesweeper game.
    */
   public void reset() {
-    mineSet.clear();
     unrevealed = (rows * columns) - mines;
+    seed = 0;
 
-    for (int r = 0; r < rows; r++) {
-      for (int c = 0; c < columns; c++) {
-        table[r][c] = new Square(this, r, c);
-      }
-    }
+    cells.clear();
 
-    updateBoard();
     setState(State.START);
+    updateBoard();
+  }
+
+  Squares getType(int index) {
+    return TYPES[(cells.get(index) & TYPE_MASK) >>> TYPE_SHIFT];
+  }
+
+  void setType(int index, Squares type) {
+    cells.set(index, (byte) ((cells.get(index) & ~TYPE_MASK) | (type.ordinal() << TYPE_SHIFT)));
+  }
+
+  int getMineCount(int index) {
+    return cells.get(index) & COUNT_MASK;
   }
 
-  void updateSquare(Square square) {
-    for (FieldHandler handler : handlers) {
-      handler.updateSquare(square);
+  boolean isMine(int index) {
+    return (cells.get(index) & MINE_BIT) != 0;
+  }
+
+  void setMine(int index, boolean mine) {
+    byte cell = cells.get(index);
+    cells.set(index, (byte) (mine ? cell | MINE_BIT : cell & ~MINE_BIT));
+  }
+
+  void toggleFlag(int index) {
+    if (instrumented) {
+      Metrics.game().flag();
     }
+
+    flag(index);
+    fireMove(Move.TOGGLE_FLAG, index);
   }
 
-  void reveal(Square square) {
-    assert !isGameOver() && square.getType() == Squares.BLANK;
+  void reveal(int index) {
+    RevealEvent event = new RevealEvent();
+    event.begin();
+    long start = start();
+
+    revealSquare(index);
+    int changed = changes.size();
+    fireChanges();
 
-    if (state == State.START) {
-      firstClick(square);
+    Metrics.game().reveal(start);
+
+    if (instrumented) {
+      event.commit(rows, columns, changed);
     }
 
-    cascade(square);
+    fireMove(Move.REVEAL, index);
   }
 
-  void onGameLost() {
-    for (Square[] columns : table) {
-      for (Square square : columns) {
-        square.onGameLost();
-      }
+  void revealNearby(int index) {
+    ChordEvent event = new ChordEvent();
+    event.begin();
+
+    int changed = chord(index);
+
+    if (instrumented) {
+      Metrics.game().chord();
+      event.commit(rows, columns, changed);
     }
 
-    updateBoard();
-    setState(State.LOST);
+    fireMove(Move.REVEAL_NEARBY, index);
   }
 
-  List<Square> findNeighbors(Square square) {
-    List<Square> neighbors = new ArrayList<>(8);
-    int row = square.getRow();
-    int column = square.getColumn();
+  private void flag(int index) {
+    if (isGameOver()) {
+      return;
+    }
 
-    for (int r = row - 1; r <= row + 1; r++) {
-      for (int c = column - 1; c <= column + 1; c++) {
-        if ((r != row || c != column) && r >= 0 && c >= 0 && r < rows && c < columns) {
-          neighbors.add(table[r][c]);
-        }
+    Squares type = getType(index);
+
+    if (type == Squares.FLAG) {
+      setType(index, Squares.BLANK);
+    } else if (type == Squares.BLANK) {
+      setType(index, Squares.FLAG);
+    } else {
+      return;
+    }
+
+    changes.add(index);
+    fireChanges();
+  }
+
+  /**
+   * Reveals the neighbors of {@code index} if it has as many flags around it
+   * as mines.
+   *
+   * @return the number of squares changed
+   */
+  private int chord(int index) {
+    if (isGameOver() || getType(index) != Squares.EXPOSED) {
+      return 0;
+    }
+
+    int[] offsets = neighbors.offsets(index);
+    int nearbyFlags = 0;
+
+    for (int offset : offsets) {
+      if (getType(index + offset) == Squares.FLAG) {
+        nearbyFlags++;
       }
     }
 
-    return neighbors;
+    if (nearbyFlags != getMineCount(index)) {
+      return 0;
+    }
+
+    for (int offset : offsets) {
+      revealSquare(index + offset);
+    }
+
+    int changed = changes.size();
+    fireChanges();
+    return changed;
+  }
+
+  boolean hasLayout() {
+    return layout != null;
+  }
+
+  /**
+   * Gets the squares of the mines of a game that has started.
+   */
+  int[] getMinePositions() {
+    return mineSet.clone();
   }
 
   void updateBoard() {
     handlers.forEach(FieldHandler::updateBoard);
   }
 
-  private void cascade(Square start) {
-    int exposed = start.visit();
+  /**
+   * Finishes restoring a saved game whose mine bits and visible types were
+   * written with {@code setMine} and {@code setType}. Recounts the nearby
+   * mines, shows the mines of a lost game and enters {@code state}.
+   *
+   * @param hit the mine that was hit if the game was lost, otherwise -1
+   * @throws IllegalStateException if the saved game is inconsistent
+   */
+  void restore(State state, long seed, int hit) {
+    if (mineSetShared) {
+      mineSet = new int[mines];
+      mineSetShared = false;
+    }
+
+    int count = 0;
+    int exposed = 0;
+
+    for (int i = 0; i < cells.size(); i++) {
+      if (isMine(i)) {
+        checkState(count < mines, "saved game has more than %s mines", mines);
+        mineSet[count++] = i;
+      }
+
+      if (getType(i) == Squares.EXPOSED) {
+        exposed++;
+      }
+    }
+
+    checkState(count == mines || (state == State.START && count == 0),
+        "saved game has %s mines, not %s", count, mines);
+    checkState(state != State.LOST || (hit >= 0 && hit < cells.size() && isMine(hit)),
+        "lost game did not hit a mine: %s", hit);
+
+    for (int i = 0; i < count; i++) {
+      for (int offset : neighbors.offsets(mineSet[i])) {
+        int neighbor = mineSet[i] + offset;
+        cells.set(neighbor, (byte) (cells.get(neighbor) + 1));
+      }
+    }
+
+    if (state == State.LOST) {
+      for (int i = 0; i < count; i++) {
+        setType(mineSet[i], Squares.MINE);
+      }
+
+      setType(hit, Squares.HITMINE);
+      setMine(hit, false);
+    }
+
+    this.seed = seed;
+    unrevealed = cells.size() - mines - exposed;
+
+    setState(state);
+    updateBoard();
+  }
+
+  private void revealSquare(int index) {
+    if (getType(index) != Squares.BLANK || isGameOver()) {
+      return;
+    }
+
+    if (isMine(index)) {
+      setType(index, Squares.HITMINE);
+      setMine(index, false);
+      changes.add(index);
+      onGameLost();
+    } else {
+      if (state == State.START) {
+        firstClick(index);
+      }
+
+      cascade(index);
+    }
+  }
+
+  private void onGameLost() {
+    GameLostEvent event = new GameLostEvent();
+    event.begin();
+    int first = changes.size();
+
+    for (int i = 0; i < cells.size(); i++) {
+      if (isMine(i)) {
+        setType(i, Squares.MINE);
+        changes.add(i);
+      } else if (getType(i) == Squares.FLAG) {
+        setType(i, Squares.WRONGMINE);
+        changes.add(i);
+      }
+    }
+
+    if (instrumented) {
+      event.commit(rows, columns, changes.size() - first);
+    }
+
+    setState(State.LOST);
+  }
+
+  private void cascade(int start) {
+    CascadeEvent event = new CascadeEvent();
+    event.begin();
+
+    int exposed = flood(start);
+
+    if (instrumented) {
+      event.commit(rows, columns, exposed);
+      Metrics.game().cascade(exposed);
+    }
 
     unrevealed -= exposed;
 
     if (unrevealed == 0) {
-      mineSet.forEach(Square::onGameWon);
+      for (int index : mineSet) {
+        setType(index, Squares.FLAG);
+        changes.add(index);
+      }
 
       setState(State.WON);
-      updateBoard();
+    }
+  }
 
-    } else if (exposed == 1) {
-      updateSquare(start);
-    } else {
-      updateBoard();
+  /**
+   * Tells the handlers about the squares changed since the last call, then
+   * forgets them.
+   */
+  private void fireChanges() {
+    long start = handlers.isEmpty() || changes.size() == 0 ? 0 : start();
+
+    if (changes.size() == 1) {
+      Square square = squareAt(changes.get(0));
+
+      for (FieldHandler handler : handlers) {
+        handler.updateSquare(square);
+      }
+    } else if (changes.size() > 1) {
+      for (FieldHandler handler : handlers) {
+        handler.updateSquares(changes);
+      }
+    }
+
+    Metrics.game().dispatch(start);
+    changes.clear();
+  }
+
+  /**
+   * Tells the handlers about a move, after its changes.
+   */
+  private void fireMove(Move move, int index) {
+    if (!handlers.isEmpty()) {
+      Square square = squareAt(index);
+
+      for (FieldHandler handler : handlers) {
+        handler.moveMade(move, square);
+      }
+    }
+  }
+
+  /**
+   * Exposes {@code start} and, if it has no nearby mines, everything reachable
+   * through other squares without nearby mines. The exposed type doubles as
+   * the visited set, and the pending change set doubles as the work queue, so
+   * a cascade allocates nothing per cell and runs in constant stack depth.
+   * On a board past the parallel threshold, a cascade that grows large is
+   * finished by {@code ParallelFlood}, which exposes the same squares.
+   *
+   * @return the number of squares exposed
+   */
+  private int flood(int start) {
+    int first = changes.size();
+    int head = first;
+    boolean parallel = cells.size() >= parallelThreshold;
+
+    setType(start, Squares.EXPOSED);
+    changes.add(start);
+
+    while (head < changes.size()) {
+      if (parallel && head - first == PARALLEL_SPLIT) {
+        cells.own();
+        new ParallelFlood(this, neighbors, rows, columns)
+            .flood(changes, head, ForkJoinPool.commonPool());
+        break;
+      }
+
+      int index = changes.get(head++);
+
+      if (getMineCount(index) != 0) {
+        continue;
+      }
+
+      for (int offset : neighbors.offsets(index)) {
+        int neighbor = index + offset;
+
+        if (getType(neighbor) != Squares.EXPOSED) {
+          setType(neighbor, Squares.EXPOSED);
+          changes.add(neighbor);
+        }
+      }
     }
+
+    return changes.size() - first;
   }
 
-  private void firstClick(Square first) {
+  private void firstClick(int first) {
+    FirstClickEvent event = new FirstClickEvent();
+    event.begin();
+    long start = start();
     setState(State.PLAYING);
 
-    List<Square> flat = new ArrayList<>(rows * columns);
+    // Each game draws its own seed so that its layout can be recreated.
+    seed = nextSeedSet ? nextSeed : random.nextLong();
+    nextSeedSet = false;
+    Random layoutRandom = new Random(seed);
+
+    if (mineSetShared) {
+      mineSet = new int[mines];
+      mineSetShared = false;
+    }
+
+    // Sample from the cells other than the first one. Sparse boards choose
+    // the mines; dense boards start full and choose the safe cells instead,
+    // so the number of random draws is at most half the board.
+    int candidates = cells.size() - 1;
+
+    if (layout != null) {
+      place(first, layout.place(rows, columns, mines, first, layoutRandom));
+    } else if (mines <= candidates / 2) {
+      sample(first, candidates, mines, true, layoutRandom);
+    } else {
+      for (int i = 0; i < cells.size(); i++) {
+        if (i != first) {
+          setMine(i, true);
+        }
+      }
+
+      sample(first, candidates, candidates - mines, false, layoutRandom);
 
-    for(int i = 0; i < rows; i++) {
-      for(int j = 0; j < columns; j++) {
-        if (table[i][j] != first) {
-          flat.add(table[i][j]);
+      for (int i = 0, count = 0; count < mines; i++) {
+        if (isMine(i)) {
+          mineSet[count++] = i;
         }
       }
     }
 
-    Collections.shuffle(flat, random);
+    for (int index : mineSet) {
+      for (int offset : neighbors.offsets(index)) {
+        int neighbor = index + offset;
+        cells.set(neighbor, (byte) (cells.get(neighbor) + 1));
+      }
+    }
+
+    Metrics.game().firstClick(start);
+
+    if (instrumented) {
+      event.commit(rows, columns, mines);
+    }
+  }
+
+  /**
+   * Lays the mines out where a {@code MineLayout} put them.
+   */
+  private void place(int first, int[] placed) {
+    checkState(placed.length == mines, "layout placed %s mines, not %s", placed.length, mines);
+
+    for (int i = 0; i < mines; i++) {
+      int cell = checkElementIndex(placed[i], cells.size());
+      checkState(cell != first && !isMine(cell),
+          "layout mined the first square or a square twice: %s", cell);
+
+      setMine(cell, true);
+      mineSet[i] = cell;
+    }
+  }
+
+  /**
+   * Chooses {@code count} distinct cells other than {@code first} with Floyd's
+   * algorithm and sets their mine bit to {@code mine}. Cells that were already
+   * chosen are recognised by their mine bit, so no separate set is needed.
+   * Chosen mines are also recorded in {@code mineSet}.
+   */
+  private void sample(int first, int candidates, int count, boolean mine, Random random) {
+    for (int j = candidates - count, i = 0; j < candidates; j++, i++) {
+      int cell = skip(first, random.nextInt(j + 1));
 
-    mineSet.addAll(flat.subList(0, mines));
+      if (isMine(cell) == mine) {
+        cell = skip(first, j);
+      }
 
-    for(Square square : mineSet) {
-      square.setMine(true);
+      setMine(cell, mine);
 
-      findNeighbors(square).forEach(Square::addNearbyMine);
+      if (mine) {
+        mineSet[i] = cell;
+      }
     }
   }
 
+  private static int skip(int first, int candidate) {
+    return candidate < first ? candidate : candidate + 1;
+  }
+
+  /**
+   * Starts timing an operation for {@code Metrics}.
+   *
+   * @return the start time, or zero if this game or metrics are not recorded
+   */
+  private long start() {
+    return instrumented ? Metrics.start() : 0;
+  }
+
+  private Square squareAt(int index) {
+    return new Square(this, index / columns, index % columns);
+  }
+
   private void setState(State state) {
     if (this.state != state) {
       this.state = state;
@@ -279,8 +763,18 @@ public final class Minefield {
     void updateSquare(Square square);
 
     /**
-     * Called when the entire board was changed. This occurs on a reset
-     * or a cascade.
+     * Called when several squares were changed by a single move. This occurs
+     * on a cascade, a chord, or when the game is won or lost. The default
+     * implementation calls {@code updateBoard()}.
+     *
+     * @param changes the changed squares, valid only during this call
+     */
+    default void updateSquares(ChangeSet changes) {
+      updateBoard();
+    }
+
+    /**
+     * Called when the entire board was changed. This occurs on a reset.
      */
     void updateBoard();
 
@@ -288,6 +782,17 @@ public final class Minefield {
      * Called when the game state was updated.
      */
     void changeState(State state);
+
+    /**
+     * Called after a player made a move on {@code square}, once its changes
+     * were reported, whether or not it changed anything. The default
+     * implementation does nothing.
+     *
+     * @param move the move
+     * @param square the square it was made on
+     */
+    default void moveMade(Move move, Square square) {
+    }
   }
 
   /**
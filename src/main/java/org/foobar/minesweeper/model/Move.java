@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+/**
+ * The moves a player can make on a {@code Minefield}.
+ */
+public enum Move {
+  /** Reveals a square, see {@link Square#reveal()}. */
+  REVEAL,
+  /** Flags or unflags a square, see {@link Square#toggleFlag()}. */
+  TOGGLE_FLAG,
+  /** Reveals the squares around a number, see {@link Square#revealNearby()}. */
+  REVEAL_NEARBY
+}
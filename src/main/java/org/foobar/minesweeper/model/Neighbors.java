@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed neighbor offsets for a row-major board. A cell's neighbors are
+ * found by adding each offset returned by {@link #offsets(int)} to its index,
+ * so iterating them needs no bounds checks and creates no garbage:
+ *
+ * <pre>
+ * for (int offset : neighbors.offsets(index)) {
+ *   visit(index + offset);
+ * }
+ * </pre>
+ */
+final class Neighbors {
+  private static final int TOP = 1;
+  private static final int BOTTOM = 2;
+  private static final int LEFT = 4;
+  private static final int RIGHT = 8;
+
+  private final int rows;
+  private final int columns;
+  private final int[][] tables = new int[16][];
+
+  Neighbors(int rows, int columns) {
+    this.rows = rows;
+    this.columns = columns;
+
+    // One table for each combination of borders a cell can touch. Boards with
+    // a single row or column touch opposite borders at the same time.
+    for (int border = 0; border < tables.length; border++) {
+      int[] table = new int[8];
+      int size = 0;
+
+      for (int dr = -1; dr <= 1; dr++) {
+        for (int dc = -1; dc <= 1; dc++) {
+          if ((dr == 0 && dc == 0)
+              || (dr < 0 && (border & TOP) != 0)
+              || (dr > 0 && (border & BOTTOM) != 0)
+              || (dc < 0 && (border & LEFT) != 0)
+              || (dc > 0 && (border & RIGHT) != 0)) {
+            continue;
+          }
+
+          table[size++] = dr * columns + dc;
+        }
+      }
+
+      tables[border] = Arrays.copyOf(table, size);
+    }
+  }
+
+  /**
+   * Gets the offsets from {@code index} to each of its neighbors. The returned
+   * array is shared and must not be modified.
+   *
+   * @param index row-major index of a cell
+   * @return offsets to add to {@code index}
+   */
+  int[] offsets(int index) {
+    int row = index / columns;
+    int column = index - row * columns;
+    int border = 0;
+
+    if (row == 0) {
+      border |= TOP;
+    }
+    if (row == rows - 1) {
+      border |= BOTTOM;
+    }
+    if (column == 0) {
+      border |= LEFT;
+    }
+    if (column == columns - 1) {
+      border |= RIGHT;
+    }
+
+    return tables[border];
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Continues a cascade on several threads. The board is split into square
+ * tiles and each tile is flooded by its own fork-join task, which is the only
+ * one to write the tile's cells, so no cell is exposed twice. When the flood
+ * reaches a neighbor in another tile, the neighbor is handed to that tile
+ * through its inbox and the tile's task is started if it is not already
+ * running. The flood ends when no tile has anything left to do.
+ *
+ * <p>
+ * Every chunk of the board's storage must be writable in place before the
+ * flood starts; see {@code CellStorage.own()}.
+ */
+final class ParallelFlood {
+  private static final int TILE_SHIFT = 7;
+  private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+
+  private final Minefield field;
+  private final Neighbors neighbors;
+  private final int columns;
+  private final int tileColumns;
+  private final AtomicReferenceArray<Tile> tiles;
+
+  ParallelFlood(Minefield field, Neighbors neighbors, int rows, int columns) {
+    this.field = field;
+    this.neighbors = neighbors;
+    this.columns = columns;
+
+    tileColumns = (columns + TILE_MASK) >>> TILE_SHIFT;
+    tiles = new AtomicReferenceArray<>(((rows + TILE_MASK) >>> TILE_SHIFT) * tileColumns);
+  }
+
+  /**
+   * Expands the exposed squares in {@code changes} from {@code from} onwards,
+   * which the sequential flood has not looked at yet, and adds every square
+   * the flood exposes to {@code changes}.
+   */
+  void flood(ChangeSet changes, int from, ForkJoinPool pool) {
+    int count = changes.size() - from;
+    int[] seeds = new int[count];
+
+    for (int i = 0; i < count; i++) {
+      // Seeds are already exposed, which is marked by storing them inverted.
+      seeds[i] = ~changes.get(from + i);
+    }
+
+    pool.invoke(new Root(seeds));
+
+    for (int t = 0; t < tiles.length(); t++) {
+      Tile tile = tiles.get(t);
+
+      if (tile != null) {
+        for (int i = 0; i < tile.size; i++) {
+          changes.add(tile.exposed[i]);
+        }
+      }
+    }
+  }
+
+  private int tileOf(int index) {
+    int row = index / columns;
+    int column = index - row * columns;
+    return (row >>> TILE_SHIFT) * tileColumns + (column >>> TILE_SHIFT);
+  }
+
+  private Tile getTile(int t) {
+    Tile tile = tiles.get(t);
+
+    if (tile == null) {
+      tiles.compareAndSet(t, null, new Tile(t));
+      tile = tiles.get(t);
+    }
+
+    return tile;
+  }
+
+  /**
+   * Hands {@code batch} to tile {@code t} and makes sure a task will read it.
+   */
+  private void send(CountedCompleter<?> root, int t, int[] batch) {
+    Tile tile = getTile(t);
+    tile.inbox.add(batch);
+
+    if (tile.scheduled.compareAndSet(false, true)) {
+      root.addToPendingCount(1);
+      new Drain(root, tile).fork();
+    }
+  }
+
+  private final class Root extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+    private final int[] seeds;
+
+    Root(int[] seeds) {
+      this.seeds = seeds;
+    }
+
+    @Override public void compute() {
+      Arrays.sort(seeds);
+
+      // Sorting groups the seeds by row, so that runs of them share a tile.
+      for (int i = 0; i < seeds.length; ) {
+        int t = tileOf(~seeds[i]);
+        int j = i + 1;
+
+        while (j < seeds.length && tileOf(~seeds[j]) == t) {
+          j++;
+        }
+
+        send(this, t, Arrays.copyOfRange(seeds, i, j));
+        i = j;
+      }
+
+      tryComplete();
+    }
+  }
+
+  /**
+   * Floods one tile from everything in its inbox.
+   */
+  private final class Drain extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+    private final Tile tile;
+
+    Drain(CountedCompleter<?> root, Tile tile) {
+      super(root);
+      this.tile = tile;
+    }
+
+    @Override public void compute() {
+      do {
+        for (int[] batch; (batch = tile.inbox.poll()) != null; ) {
+          for (int seed : batch) {
+            if (seed < 0) {
+              expand(~seed);
+            } else {
+              expose(seed);
+            }
+          }
+
+          while (tile.head < tile.size) {
+            expand(tile.exposed[tile.head++]);
+          }
+        }
+
+        flush();
+        tile.scheduled.set(false);
+      } while (!tile.inbox.isEmpty() && tile.scheduled.compareAndSet(false, true));
+
+      tryComplete();
+    }
+
+    private void expose(int index) {
+      if (field.getType(index) != Squares.EXPOSED) {
+        field.setType(index, Squares.EXPOSED);
+        tile.add(index);
+      }
+    }
+
+    private void expand(int index) {
+      if (field.getMineCount(index) != 0) {
+        return;
+      }
+
+      int row = index / columns;
+      int column = index - row * columns;
+      int r = row & TILE_MASK;
+      int c = column & TILE_MASK;
+      boolean inside = r != 0 && r != TILE_MASK && c != 0 && c != TILE_MASK;
+
+      for (int offset : neighbors.offsets(index)) {
+        int neighbor = index + offset;
+        int t = inside ? tile.id : tileOf(neighbor);
+
+        if (t == tile.id) {
+          expose(neighbor);
+        } else {
+          tile.post(t, neighbor);
+        }
+      }
+    }
+
+    private void flush() {
+      for (int i = 0; i < tile.outCount; i++) {
+        send(getCompleter(), tile.outTiles[i], Arrays.copyOf(tile.out[i], tile.outSizes[i]));
+      }
+
+      tile.outCount = 0;
+    }
+  }
+
+  /**
+   * The state of one tile. Everything but the inbox and the scheduled flag
+   * is only touched by the tile's running task, and the flag orders one
+   * task's writes before the next task's reads.
+   */
+  private static final class Tile {
+    final int id;
+    final Queue<int[]> inbox = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean scheduled = new AtomicBoolean();
+    int[] exposed = new int[64];
+    int size;
+    int head;
+
+    // Squares waiting to be sent to each of up to eight neighboring tiles.
+    final int[] outTiles = new int[8];
+    final int[][] out = new int[8][];
+    final int[] outSizes = new int[8];
+    int outCount;
+
+    Tile(int id) {
+      this.id = id;
+    }
+
+    void add(int index) {
+      if (size == exposed.length) {
+        exposed = Arrays.copyOf(exposed, size * 2);
+      }
+
+      exposed[size++] = index;
+    }
+
+    void post(int t, int index) {
+      int i = 0;
+
+      while (i < outCount && outTiles[i] != t) {
+        i++;
+      }
+
+      if (i == outCount) {
+        outTiles[i] = t;
+        outSizes[i] = 0;
+
+        if (out[i] == null) {
+          out[i] = new int[16];
+        }
+
+        outCount++;
+      }
+
+      if (outSizes[i] == out[i].length) {
+        out[i] = Arrays.copyOf(out[i], outSizes[i] * 2);
+      }
+
+      out[i][outSizes[i]++] = index;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A mine layout in which whether a square holds a mine is a pure function of
+ * a seed and the square's coordinates. Nothing is stored per square, so the
+ * layout covers every {@code int} coordinate and nearby mine counts can be
+ * computed on demand.
+ *
+ * <p>
+ * Each square hashes its coordinates with the seed through a SplitMix64
+ * finalizer and holds a mine if the hash, read as a fraction, is below the
+ * density. The square of the first click never holds a mine.
+ */
+public final class ProceduralMines {
+  private final long seed;
+  private final double density;
+  private final int safeRow;
+  private final int safeColumn;
+
+  /**
+   * Creates a {@code ProceduralMines} layout.
+   *
+   * @param seed the seed of the layout
+   * @param density the probability that a square holds a mine
+   * @param safeRow row of the first click
+   * @param safeColumn column of the first click
+   * @throws IllegalArgumentException if {@code density} is not between 0
+   *           and 1, exclusive
+   */
+  public ProceduralMines(long seed, double density, int safeRow, int safeColumn) {
+    checkArgument(density > 0 && density < 1, "density must be between 0 and 1: %s", density);
+
+    this.seed = seed;
+    this.density = density;
+    this.safeRow = safeRow;
+    this.safeColumn = safeColumn;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public double getDensity() {
+    return density;
+  }
+
+  /**
+   * Determines whether the square at {@code row} and {@code column} holds a
+   * mine.
+   *
+   * @return true if the square holds a mine
+   */
+  public boolean isMine(int row, int column) {
+    if (row == safeRow && column == safeColumn) {
+      return false;
+    }
+
+    long hash = mix(seed + row * 0x9E3779B97F4A7C15L);
+    hash = mix(hash + column * 0xC2B2AE3D27D4EB4FL);
+
+    return (hash >>> 11) * 0x1.0p-53 < density;
+  }
+
+  /**
+   * Counts the mines next to the square at {@code row} and {@code column}.
+   * Coordinates wrap around at the edges of the {@code int} range.
+   *
+   * @return the number of nearby mines
+   */
+  public int countNearby(int row, int column) {
+    int count = 0;
+
+    for (int dr = -1; dr <= 1; dr++) {
+      for (int dc = -1; dc <= 1; dc++) {
+        if ((dr != 0 || dc != 0) && isMine(row + dr, column + dc)) {
+          count++;
+        }
+      }
+    }
+
+    return count;
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays back the games recorded by a {@link Journal}.
+ *
+ * <p>
+ * Loading a journal plays it once and keeps a copy of the game every
+ * {@link #CHECKPOINT_INTERVAL} moves. The copies are forks, which share the
+ * squares they have in common, so they are cheap to keep. Seeking to a move
+ * then starts from the checkpoint before it and plays at most that many
+ * moves.
+ */
+public final class Replay {
+  /** The number of moves between checkpoints. */
+  public static final int CHECKPOINT_INTERVAL = 1024;
+
+  private final int size;
+  private final int moves;
+  private final byte[] kinds;
+  private final int[] squares;
+  private final long[] seeds;
+  private final boolean[] seeded;
+  private final int[][] layouts;
+  private final List<Minefield> checkpoints = new ArrayList<>();
+
+  private Replay(int rows, int columns, int mines, int moves, byte[] kinds, int[] squares,
+      long[] seeds, boolean[] seeded, int[][] layouts) {
+    this.size = rows * columns;
+    this.moves = moves;
+    this.kinds = kinds;
+    this.squares = squares;
+    this.seeds = seeds;
+    this.seeded = seeded;
+    this.layouts = layouts;
+
+    // Replayed moves were counted when they were played.
+    Minefield field = new Minefield(rows, columns, mines);
+    field.setInstrumented(false);
+    checkpoints.add(field.fork());
+
+    for (int move = 0; move < moves; move++) {
+      play(field, move);
+
+      if ((move + 1) % CHECKPOINT_INTERVAL == 0) {
+        checkpoints.add(field.fork());
+      }
+    }
+  }
+
+  /**
+   * Loads a journal.
+   *
+   * @param path the journal file
+   * @return the replay
+   * @throws IOException if the file cannot be read or is not a valid journal
+   */
+  public static Replay load(Path path) throws IOException {
+    ByteBuffer buffer;
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      checkSize(channel.size() <= Integer.MAX_VALUE, path);
+      buffer = ByteBuffer.allocate((int) channel.size());
+
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+      }
+
+      buffer.flip();
+    }
+
+    try {
+      if (buffer.remaining() < Journal.HEADER_SIZE || buffer.getInt() != Journal.MAGIC) {
+        throw new IOException("not a journal: " + path);
+      }
+
+      short version = buffer.getShort();
+
+      if (version != Journal.VERSION) {
+        throw new IOException("unsupported journal version: " + version);
+      }
+
+      buffer.getShort();
+      int rows = buffer.getInt();
+      int columns = buffer.getInt();
+      int mines = buffer.getInt();
+
+      int capacity = buffer.remaining() / 5 + 1;
+      byte[] kinds = new byte[capacity];
+      int[] squares = new int[capacity];
+      long[] seeds = new long[capacity];
+      boolean[] seeded = new boolean[capacity];
+      int[][] layouts = new int[capacity][];
+      int moves = 0;
+
+      while (buffer.hasRemaining()) {
+        byte kind = buffer.get();
+
+        if (kind == Journal.SEED) {
+          seeds[moves] = buffer.getLong();
+          seeded[moves] = true;
+          continue;
+        }
+
+        if (kind == Journal.LAYOUT) {
+          int count = buffer.getInt();
+          checkSize(count == mines && count <= buffer.remaining() / 4, path);
+          layouts[moves] = new int[count];
+          buffer.asIntBuffer().get(layouts[moves]);
+          buffer.position(buffer.position() + 4 * count);
+          continue;
+        }
+
+        checkSize(kind >= Journal.RESET && kind <= Journal.REVEAL_NEARBY, path);
+        kinds[moves] = kind;
+        squares[moves] = kind == Journal.RESET ? 0 : buffer.getInt();
+        moves++;
+      }
+
+      return new Replay(rows, columns, mines, moves, kinds, squares, seeds, seeded, layouts);
+    } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new IOException("corrupt journal: " + path, e);
+    }
+  }
+
+  /**
+   * Gets the number of moves recorded, counting each new game as a move.
+   *
+   * @return the number of moves
+   */
+  public int getMoveCount() {
+    return moves;
+  }
+
+  /**
+   * Recreates a game as it was after {@code move} moves. The game is new
+   * and can be played on. It is not instrumented; see
+   * {@link Minefield#setInstrumented(boolean)}.
+   *
+   * @param move the number of moves to play, from 0 to
+   *          {@code getMoveCount()}
+   * @return the game
+   * @throws IndexOutOfBoundsException if {@code move} is out of range
+   */
+  public Minefield seek(int move) {
+    checkElementIndex(move, moves + 1);
+
+    Minefield field = checkpoints.get(move / CHECKPOINT_INTERVAL).fork();
+
+    for (int i = move - move % CHECKPOINT_INTERVAL; i < move; i++) {
+      play(field, i);
+    }
+
+    return field;
+  }
+
+  private void play(Minefield field, int move) {
+    int square = squares[move];
+
+    if (kinds[move] != Journal.RESET) {
+      checkElementIndex(square, size);
+    }
+
+    if (seeded[move]) {
+      field.setNextSeed(seeds[move]);
+    }
+
+    if (layouts[move] != null) {
+      int[] mines = layouts[move];
+      field.setLayout((rows, columns, count, first, random) -> mines.clone());
+    }
+
+    switch (kinds[move]) {
+    case Journal.RESET:
+      field.reset();
+      break;
+    case Journal.REVEAL:
+      field.reveal(square);
+      break;
+    case Journal.TOGGLE_FLAG:
+      field.toggleFlag(square);
+      break;
+    default:
+      field.revealNearby(square);
+    }
+
+    field.setLayout(null);
+  }
+
+  private static void checkSize(boolean valid, Path path) throws IOException {
+    if (!valid) {
+      throw new IOException("corrupt journal: " + path);
+    }
+  }
+}
@@ -16,15 +16,15 @@
 
 package org.foobar.minesweeper.model;
 
-import java.util.List;
-
+/**
+ * A view of a single cell of a {@code Minefield}. The cell state itself is
+ * stored by the minefield, so squares are cheap to create and two squares
+ * for the same cell are equal.
+ */
 public class Square {
   private final int column;
   private final int row;
   private final Minefield minefield;
-  private boolean mine;
-  private Squares type = Squares.BLANK;
-  private int nearbyMines;
 
   Square(Minefield minefield, int row, int column) {
     this.minefield = minefield;
@@ -38,7 +38,7 @@ public class Square {
    * @return type of the Square
    */
   public Squares getType() {
-    return type;
+    return minefield.getType(getIndex());
   }
 
   /**
@@ -49,7 +49,7 @@ public class Square {
    * @return true if the square can be revealed.
    */
   public boolean isRevealable() {
-    return !minefield.isGameOver() && type == Squares.BLANK;
+    return !minefield.isGameOver() && getType() == Squares.BLANK;
   }
 
   /**
@@ -75,7 +75,7 @@ public class Square {
    *
    */
   public int getMineCount() {
-    return nearbyMines;
+    return minefield.getMineCount(getIndex());
   }
 
   /**
@@ -84,19 +84,7 @@ public class Square {
    *
    */
   public void toggleFlag() {
-    if (minefield.isGameOver()) {
-      return;
-    }
-
-    if (type == Squares.FLAG) {
-      type = Squares.BLANK;
-    } else if (type == Squares.BLANK) {
-      type = Squares.FLAG;
-    } else {
-      return;
-    }
-
-    minefield.updateSquare(this);
+    minefield.toggleFlag(getIndex());
   }
 
   /**
@@ -108,17 +96,7 @@ public class Square {
    * restarted.
    */
   public void reveal() {
-    if (type != Squares.BLANK || minefield.isGameOver()) {
-      return;
-    }
-
-    if (mine) {
-      type = Squares.HITMINE;
-      mine = false;
-      minefield.onGameLost();
-    } else {
-      minefield.reveal(this);
-    }
+    minefield.reveal(getIndex());
   }
 
   /**
@@ -126,60 +104,33 @@ public class Square {
    * work. Otherwise, the method returns with no change.
    */
   public void revealNearby() {
-    if (minefield.isGameOver() || type != Squares.EXPOSED) {
-      return;
-    }
-
-    List<Square> neighbors = minefield.findNeighbors(this);
-
-    int nearbyFlags = neighbors.stream()
-            .filter(square -> square.type == Squares.FLAG)
-            .mapToInt(e -> 1)
-            .sum();
+    minefield.revealNearby(getIndex());
+  }
 
-    if (nearbyFlags == nearbyMines) {
-      neighbors.forEach(Square::reveal);
+  @Override public boolean equals(Object obj) {
+    if (!(obj instanceof Square)) {
+      return false;
     }
-  }
 
-  void addNearbyMine() {
-    nearbyMines++;
-  }
+    Square other = (Square) obj;
 
-  boolean isMine() {
-    return mine;
+    return minefield == other.minefield && row == other.row
+        && column == other.column;
   }
 
-  void setMine(boolean isMine) {
-    mine = isMine;
+  @Override public int hashCode() {
+    return 31 * getIndex() + System.identityHashCode(minefield);
   }
 
-  void onGameLost() {
-    if (mine) {
-      type = Squares.MINE;
-    } else if (type == Squares.FLAG) {
-      type = Squares.WRONGMINE;
-    }
+  @Override public String toString() {
+    return "Square(" + row + ", " + column + ")";
   }
 
-  void onGameWon() {
-    if (mine) {
-      type = Squares.FLAG;
-    }
+  boolean isMine() {
+    return minefield.isMine(getIndex());
   }
 
-  int visit() {
-    int exposed = 1;
-    type = Squares.EXPOSED;
-
-    if (nearbyMines == 0) {
-      for (Square square : minefield.findNeighbors(this)) {
-        if (square.type != Squares.EXPOSED) {
-          exposed += square.visit();
-        }
-      }
-    }
-
-    return exposed;
+  int getIndex() {
+    return row * minefield.getColumnCount() + column;
   }
 }
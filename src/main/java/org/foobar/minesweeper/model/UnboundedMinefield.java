@@ -0,0 +1,358 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.foobar.minesweeper.model.Minefield.State;
+
+/**
+ * A Minesweeper game on a board without edges. Mines come from a
+ * {@code ProceduralMines} layout chosen at the first click, so only squares
+ * the player has changed are stored, and nearby mine counts are computed when
+ * a square is exposed.
+ *
+ * <p>
+ * Squares are stored in 64x64 chunks that are created when first changed.
+ * After every move, chunks outside the viewport are compressed, least
+ * recently used first, until the resident chunks fit the memory budget.
+ * Compressed chunks stay in memory up to a second budget, and the oldest
+ * past it are written to disk, to the spill directory if one is set. Long
+ * exploration therefore keeps a flat resident footprint.
+ *
+ * <p>
+ * The game can be lost but never won. A reveal stops cascading once it has
+ * exposed about {@code MAX_CASCADE} squares; exposed squares left with covered neighbors
+ * can be opened further with {@code revealNearby}.
+ *
+ * This class is not thread-safe.
+ */
+public final class UnboundedMinefield {
+  /** The number of squares after which a cascade stops. */
+  public static final int MAX_CASCADE = 1 << 20;
+
+  /** The default budget for uncompressed chunks, in bytes. */
+  public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+  /** The default budget for compressed chunks kept in memory, in bytes. */
+  public static final long DEFAULT_COMPRESSED_BUDGET = 16L << 20;
+
+  private static final int CHUNK_BYTES = ChunkMap.SIZE * ChunkMap.SIZE;
+
+  // Stored squares pack the ordinal of their Squares type in the low three
+  // bits and their nearby mine count above it. An absent square is a blank.
+  private static final int TYPE_MASK = 0x07;
+  private static final int COUNT_SHIFT = 3;
+  private static final Squares[] TYPES = Squares.values();
+
+  private final double density;
+  private final Random random;
+  private final ChunkMap cells = new ChunkMap();
+  private int viewportRow;
+  private int viewportColumn;
+  private int viewportRows = 1;
+  private int viewportColumns = 1;
+  private ProceduralMines layout;
+  private State state;
+  private int[] queue = new int[128];
+
+  /**
+   * Creates an {@code UnboundedMinefield}.
+   *
+   * @param density the probability that a square holds a mine
+   * @throws IllegalArgumentException if {@code density} is not between 0
+   *           and 1, exclusive
+   */
+  public UnboundedMinefield(double density) {
+    this(density, new Random());
+  }
+
+  UnboundedMinefield(double density, Random random) {
+    checkArgument(density > 0 && density < 1, "density must be between 0 and 1: %s", density);
+
+    this.density = density;
+    this.random = random;
+
+    setMemoryBudget(DEFAULT_MEMORY_BUDGET);
+    setCompressedBudget(DEFAULT_COMPRESSED_BUDGET);
+    reset();
+  }
+
+  public double getDensity() {
+    return density;
+  }
+
+  /**
+   * Gets the current game state. It is never {@code WON}.
+   *
+   * @return the current game state
+   */
+  public State getState() {
+    return state;
+  }
+
+  public boolean isGameOver() {
+    return state == State.LOST;
+  }
+
+  /**
+   * Gets the mine layout of the current game.
+   *
+   * @return the layout, or null before the first click
+   */
+  public ProceduralMines getLayout() {
+    return layout;
+  }
+
+  /**
+   * Sets how much memory uncompressed chunks may use between moves.
+   *
+   * @param bytes the budget in bytes
+   */
+  public void setMemoryBudget(long bytes) {
+    checkArgument(bytes >= CHUNK_BYTES, "budget must hold at least one chunk: %s", bytes);
+
+    cells.setBudget((int) Math.min(bytes / CHUNK_BYTES, Integer.MAX_VALUE));
+  }
+
+  /**
+   * Sets how much memory compressed chunks may use. Past it, the oldest are
+   * written to disk.
+   *
+   * @param bytes the budget in bytes, or 0 to write every evicted chunk to
+   *          disk
+   */
+  public void setCompressedBudget(long bytes) {
+    checkArgument(bytes >= 0, "budget must not be negative: %s", bytes);
+
+    cells.setCompressedBudget(bytes);
+  }
+
+  /**
+   * Sets the directory chunks past the compressed budget are written to. By
+   * default they go to a temporary directory.
+   *
+   * @param directory an existing directory, or null to use a temporary one
+   */
+  public void setSpillDirectory(Path directory) {
+    cells.setSpillDirectory(directory);
+  }
+
+  /**
+   * Sets the rectangle of squares the player is looking at. Chunks that
+   * overlap it are never evicted.
+   */
+  public void setViewport(int firstRow, int firstColumn, int rows, int columns) {
+    checkArgument(rows > 0 && columns > 0, "viewport must not be empty");
+
+    viewportRow = firstRow;
+    viewportColumn = firstColumn;
+    viewportRows = rows;
+    viewportColumns = columns;
+  }
+
+  /**
+   * Gets the number of chunks held uncompressed.
+   *
+   * @return the number of resident chunks
+   */
+  public int getResidentChunkCount() {
+    return cells.getResidentCount();
+  }
+
+  /**
+   * Gets the number of chunks that have been evicted, in memory or on disk.
+   *
+   * @return the number of evicted chunks
+   */
+  public int getEvictedChunkCount() {
+    return cells.getCompressedCount() + cells.getSpilledCount();
+  }
+
+  /**
+   * Gets the type of the square at {@code row} and {@code column}. Once the
+   * game is lost, covered mines are reported as {@code MINE} and flags on safe
+   * squares as {@code WRONGMINE}.
+   *
+   * @return the type of the square
+   */
+  public Squares getType(int row, int column) {
+    Squares type = TYPES[cells.get(row, column) & TYPE_MASK];
+
+    if (state == State.LOST) {
+      if (type == Squares.BLANK && layout.isMine(row, column)) {
+        return Squares.MINE;
+      } else if (type == Squares.FLAG && !layout.isMine(row, column)) {
+        return Squares.WRONGMINE;
+      }
+    }
+
+    return type;
+  }
+
+  /**
+   * Gets the number of mines next to the square at {@code row} and
+   * {@code column}. This is only known once the square is exposed.
+   *
+   * @return the number of nearby mines, or 0 if the square is not exposed
+   */
+  public int getMineCount(int row, int column) {
+    return (cells.get(row, column) & 0xFF) >>> COUNT_SHIFT;
+  }
+
+  /**
+   * Starts a new game. The next reveal chooses a new layout.
+   */
+  public void reset() {
+    cells.clear();
+    layout = null;
+    state = State.START;
+  }
+
+  /**
+   * Toggles the flag on the square at {@code row} and {@code column}, if the
+   * game is not over and the square is covered.
+   */
+  public void toggleFlag(int row, int column) {
+    if (isGameOver()) {
+      return;
+    }
+
+    Squares type = TYPES[cells.get(row, column) & TYPE_MASK];
+
+    if (type == Squares.FLAG) {
+      cells.set(row, column, pack(Squares.BLANK, 0));
+    } else if (type == Squares.BLANK) {
+      cells.set(row, column, pack(Squares.FLAG, 0));
+    }
+
+    evict();
+  }
+
+  /**
+   * Reveals the square at {@code row} and {@code column}. The first reveal of
+   * a game chooses the layout so that the square is safe.
+   */
+  public void reveal(int row, int column) {
+    revealSquare(row, column);
+    evict();
+  }
+
+  /**
+   * Reveals the squares next to an exposed square whose nearby mines are all
+   * flagged.
+   */
+  public void revealNearby(int row, int column) {
+    if (isGameOver() || getType(row, column) != Squares.EXPOSED) {
+      return;
+    }
+
+    int flags = 0;
+
+    for (int dr = -1; dr <= 1; dr++) {
+      for (int dc = -1; dc <= 1; dc++) {
+        if (getType(row + dr, column + dc) == Squares.FLAG) {
+          flags++;
+        }
+      }
+    }
+
+    if (flags == getMineCount(row, column)) {
+      for (int dr = -1; dr <= 1; dr++) {
+        for (int dc = -1; dc <= 1; dc++) {
+          revealSquare(row + dr, column + dc);
+        }
+      }
+
+      evict();
+    }
+  }
+
+  private void revealSquare(int row, int column) {
+    if (isGameOver() || TYPES[cells.get(row, column) & TYPE_MASK] != Squares.BLANK) {
+      return;
+    }
+
+    if (state == State.START) {
+      layout = new ProceduralMines(random.nextLong(), density, row, column);
+      state = State.PLAYING;
+    }
+
+    if (layout.isMine(row, column)) {
+      cells.set(row, column, pack(Squares.HITMINE, 0));
+      state = State.LOST;
+    } else {
+      cascade(row, column);
+    }
+  }
+
+  /**
+   * Compresses chunks the viewport does not touch until the resident ones fit
+   * the budget. Only called between moves, when no cascade is using them.
+   */
+  private void evict() {
+    cells.evict(viewportRow, viewportColumn, viewportRow + viewportRows - 1,
+        viewportColumn + viewportColumns - 1);
+  }
+
+  /**
+   * Flood fills from the given square like {@code Minefield} does, keeping
+   * coordinate pairs in an int queue.
+   */
+  private void cascade(int row, int column) {
+    int tail = 0;
+
+    expose(row, column);
+    queue[tail++] = row;
+    queue[tail++] = column;
+
+    for (int head = 0; head < tail && tail < 2 * MAX_CASCADE; head += 2) {
+      int r = queue[head];
+      int c = queue[head + 1];
+
+      if (getMineCount(r, c) != 0) {
+        continue;
+      }
+
+      for (int dr = -1; dr <= 1; dr++) {
+        for (int dc = -1; dc <= 1; dc++) {
+          if (TYPES[cells.get(r + dr, c + dc) & TYPE_MASK] != Squares.EXPOSED) {
+            expose(r + dr, c + dc);
+
+            if (tail == queue.length) {
+              queue = Arrays.copyOf(queue, tail * 2);
+            }
+            queue[tail++] = r + dr;
+            queue[tail++] = c + dc;
+          }
+        }
+      }
+    }
+  }
+
+  private void expose(int row, int column) {
+    cells.set(row, column, pack(Squares.EXPOSED, layout.countNearby(row, column)));
+  }
+
+  private static byte pack(Squares type, int count) {
+    return (byte) (type.ordinal() | (count << COUNT_SHIFT));
+  }
+}
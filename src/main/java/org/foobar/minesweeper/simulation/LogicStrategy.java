@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.simulation;
+
+import java.util.Random;
+
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Minefield.State;
+import org.foobar.minesweeper.model.Square;
+import org.foobar.minesweeper.solver.Solver;
+
+/**
+ * Opens the center square, then reveals squares a {@code Solver} proves safe,
+ * and guesses at random only when nothing can be deduced. Guesses avoid
+ * squares known to be mines.
+ */
+public class LogicStrategy implements Strategy {
+  private static final int ATTEMPTS = 64;
+
+  private Minefield attached;
+  private Solver solver;
+
+  @Override public boolean move(Minefield field, Random random) {
+    if (field != attached) {
+      if (solver != null) {
+        solver.detach();
+      }
+
+      attached = field;
+      solver = new Solver(field);
+    }
+
+    int rows = field.getRowCount();
+    int columns = field.getColumnCount();
+
+    if (field.getState() == State.START) {
+      field.getSquare(rows / 2, columns / 2).reveal();
+      return true;
+    }
+
+    solver.solve();
+    Square safe = solver.findSafe();
+
+    if (safe != null) {
+      safe.reveal();
+      return true;
+    }
+
+    return guess(field, random, rows, columns);
+  }
+
+  private boolean guess(Minefield field, Random random, int rows, int columns) {
+    for (int i = 0; i < ATTEMPTS; i++) {
+      int row = random.nextInt(rows);
+      int column = random.nextInt(columns);
+      Square square = field.getSquare(row, column);
+
+      if (square.isRevealable() && !solver.isMine(row, column)) {
+        square.reveal();
+        return true;
+      }
+    }
+
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        Square square = field.getSquare(row, column);
+
+        if (square.isRevealable() && !solver.isMine(row, column)) {
+          square.reveal();
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.simulation;
+
+import java.util.Random;
+
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Square;
+
+/**
+ * Reveals a covered square chosen uniformly at random on every move. This is
+ * the baseline other strategies are measured against.
+ */
+public class RandomStrategy implements Strategy {
+  private static final int ATTEMPTS = 32;
+
+  @Override public boolean move(Minefield field, Random random) {
+    int rows = field.getRowCount();
+    int columns = field.getColumnCount();
+
+    // Guess a few times, then fall back to scanning from a random square so
+    // nearly finished boards don't spin.
+    for (int i = 0; i < ATTEMPTS; i++) {
+      Square square = field.getSquare(random.nextInt(rows), random.nextInt(columns));
+
+      if (square.isRevealable()) {
+        square.reveal();
+        return true;
+      }
+    }
+
+    int cells = rows * columns;
+    int start = random.nextInt(cells);
+
+    for (int i = 0; i < cells; i++) {
+      int index = (start + i) % cells;
+      Square square = field.getSquare(index / columns, index % columns);
+
+      if (square.isRevealable()) {
+        square.reveal();
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
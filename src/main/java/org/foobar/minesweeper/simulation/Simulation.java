@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.simulation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Minefield.State;
+
+/**
+ * Plays many games of one board size in parallel and aggregates the outcome.
+ *
+ * <p>
+ * Every worker thread owns a single {@code Minefield}, which it resets
+ * between games, and its own {@code Strategy} and {@code Random}. Workers
+ * claim games in batches from a shared counter, so fast and slow games even
+ * out across threads.
+ *
+ * <p>
+ * Each game's mines and the strategy's random choices are seeded from the
+ * simulation's seed and the game's number, so a run with the same seed
+ * plays the same games however they are spread across threads. Simulated
+ * games are not counted in {@code Metrics} or emitted as Flight Recorder
+ * events.
+ */
+public final class Simulation {
+  private static final int BATCH = 256;
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private final int rows;
+  private final int columns;
+  private final int mines;
+  private final Supplier<? extends Strategy> strategies;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private long seed = System.nanoTime();
+
+  /**
+   * Creates a {@code Simulation}.
+   *
+   * @param rows the number of rows of each board
+   * @param columns the number of columns of each board
+   * @param mines the number of mines on each board
+   * @param strategies creates one strategy for each worker thread
+   */
+  public Simulation(int rows, int columns, int mines, Supplier<? extends Strategy> strategies) {
+    this.rows = rows;
+    this.columns = columns;
+    this.mines = mines;
+    this.strategies = checkNotNull(strategies);
+
+    // Fail fast on invalid board sizes.
+    new Minefield(rows, columns, mines);
+  }
+
+  /**
+   * Sets the number of worker threads. The default is the number of
+   * available processors.
+   */
+  public Simulation setParallelism(int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Sets the seed every game's mines and random choices are derived from.
+   * The default is the time the simulation was created.
+   */
+  public Simulation setSeed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * Plays {@code games} games and waits for them to finish.
+   *
+   * @param games the number of games to play
+   * @return the aggregated outcome
+   */
+  public SimulationResult run(long games) {
+    checkArgument(games >= 0, "games must not be negative: %s", games);
+
+    AtomicLong next = new AtomicLong();
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    List<ForkJoinTask<long[]>> tasks = new ArrayList<>(parallelism);
+    long start = System.nanoTime();
+
+    try {
+      for (int i = 0; i < parallelism; i++) {
+        tasks.add(pool.submit(() -> play(next, games)));
+      }
+
+      long[] total = new long[4];
+
+      for (ForkJoinTask<long[]> task : tasks) {
+        long[] counts = task.join();
+
+        for (int i = 0; i < total.length; i++) {
+          total[i] += counts[i];
+        }
+      }
+
+      return new SimulationResult(total[0], total[1], total[2], total[3],
+          System.nanoTime() - start);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Plays games until none remain.
+   *
+   * @param next the number of the next game to claim
+   * @param games the number of games to play
+   * @return wins, losses, abandoned games and moves
+   */
+  private long[] play(AtomicLong next, long games) {
+    Minefield field = new Minefield(rows, columns, mines);
+    field.setInstrumented(false);
+    Strategy strategy = strategies.get();
+    Random random = new Random();
+    long wins = 0;
+    long losses = 0;
+    long abandoned = 0;
+    long moves = 0;
+    long maxMoves = (long) rows * columns;
+
+    for (long first; (first = next.getAndAdd(BATCH)) < games; ) {
+      for (long game = first; game < Math.min(first + BATCH, games); game++) {
+        long gameSeed = mix(seed + game * GOLDEN_GAMMA);
+
+        field.reset();
+        field.setNextSeed(gameSeed);
+        random.setSeed(mix(gameSeed));
+        strategy.newGame();
+
+        long count = 0;
+        boolean playing = true;
+
+        while (playing && !field.isGameOver() && count < maxMoves) {
+          playing = strategy.move(field, random);
+          count++;
+        }
+
+        moves += count;
+
+        if (field.getState() == State.WON) {
+          wins++;
+        } else if (field.getState() == State.LOST) {
+          losses++;
+        } else {
+          abandoned++;
+        }
+      }
+    }
+
+    return new long[] {wins, losses, abandoned, moves};
+  }
+
+  /**
+   * Scrambles the bits of {@code z}, so that seeds of consecutive games are
+   * unrelated. This is the finalizer of SplitMix64.
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Runs a simulation and prints the result.
+   *
+   * @param args rows, columns, mines, the number of games and optionally the
+   *          strategy, {@code random} or {@code logic}
+   */
+  public static void main(String[] args) {
+    if (args.length != 4 && args.length != 5) {
+      System.err.println("usage: Simulation <rows> <columns> <mines> <games> [random|logic]");
+      System.exit(2);
+    }
+
+    boolean logic = args.length == 5 && args[4].equals("logic");
+    Simulation simulation = new Simulation(Integer.parseInt(args[0]),
+        Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+        logic ? LogicStrategy::new : RandomStrategy::new);
+
+    System.out.println(simulation.run(Long.parseLong(args[3])));
+  }
+}
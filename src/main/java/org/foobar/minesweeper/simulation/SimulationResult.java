@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.simulation;
+
+/**
+ * Aggregated outcome of a {@code Simulation} run.
+ */
+public final class SimulationResult {
+  private final long wins;
+  private final long losses;
+  private final long abandoned;
+  private final long moves;
+  private final long elapsedNanos;
+
+  SimulationResult(long wins, long losses, long abandoned, long moves, long elapsedNanos) {
+    this.wins = wins;
+    this.losses = losses;
+    this.abandoned = abandoned;
+    this.moves = moves;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Gets the number of games played.
+   *
+   * @return the number of games played
+   */
+  public long getGames() {
+    return wins + losses + abandoned;
+  }
+
+  public long getWins() {
+    return wins;
+  }
+
+  public long getLosses() {
+    return losses;
+  }
+
+  /**
+   * Gets the number of games the strategy gave up on.
+   *
+   * @return the number of abandoned games
+   */
+  public long getAbandoned() {
+    return abandoned;
+  }
+
+  /**
+   * Gets the total number of times the strategy was asked to move.
+   *
+   * @return the number of moves
+   */
+  public long getMoves() {
+    return moves;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public double getWinRate() {
+    return getGames() == 0 ? 0 : (double) wins / getGames();
+  }
+
+  public double getGamesPerSecond() {
+    return elapsedNanos == 0 ? 0 : getGames() * 1e9 / elapsedNanos;
+  }
+
+  @Override public String toString() {
+    return String.format("%d games (%d won, %d lost, %d abandoned), win rate %.4f, "
+        + "%.1f moves/game, %.0f games/s", getGames(), wins, losses, abandoned,
+        getWinRate(), getGames() == 0 ? 0 : (double) moves / getGames(),
+        getGamesPerSecond());
+  }
+}
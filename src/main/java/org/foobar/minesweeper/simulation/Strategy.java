@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.simulation;
+
+import java.util.Random;
+
+import org.foobar.minesweeper.model.Minefield;
+
+/**
+ * Decides the moves of a simulated player. A strategy plays through the
+ * public {@code Square} API: {@code reveal}, {@code toggleFlag} and
+ * {@code revealNearby}.
+ *
+ * <p>
+ * Each simulation thread gets its own strategy instance, so implementations
+ * may keep per-game state without synchronization.
+ */
+@FunctionalInterface
+public interface Strategy {
+  /**
+   * Makes at least one move on {@code field}. The simulation calls this until
+   * the game is over or the strategy gives up.
+   *
+   * @param field the game in progress
+   * @param random source of randomness for this thread
+   * @return false to abandon the game
+   */
+  boolean move(Minefield field, Random random);
+
+  /**
+   * Called before each new game. The default implementation does nothing.
+   */
+  default void newGame() {
+  }
+}
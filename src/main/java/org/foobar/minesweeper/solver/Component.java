@@ -0,0 +1,347 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.solver;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A connected group of frontier squares and the constraints over them. The
+ * mine layouts of one component do not depend on any other, so each is
+ * solved on its own and the results are combined with the global mine count.
+ *
+ * <p>
+ * Squares are numbered 0 to {@code size() - 1}. After solving,
+ * {@link #getWeight(int)} holds the number of layouts with {@code k} mines
+ * and {@link #getMineWeight(int, int)} the number of those in which a given
+ * square is a mine. When the component was sampled instead of enumerated,
+ * both are estimates, scaled by a constant and by {@code exp(k * getLogOdds())};
+ * dividing them by the latter makes them proportional to the counts.
+ */
+final class Component {
+  private static final int CHECK_INTERVAL = 1 << 12;
+  private static final int MAX_SAMPLES = 1 << 13;
+
+  private final int[] squares;
+  private final int[][] constraints;
+  private final int[] needs;
+  private final int[][] constraintsOf;
+
+  private final double[] weights;
+  private final double[][] mineWeights;
+  private boolean exact;
+  private boolean solved;
+  private double logOdds;
+  private double logScale;
+
+  // Search state.
+  private final int[] need;
+  private final int[] free;
+  private final long[] bits;
+  private int mineCount;
+
+  /**
+   * @param squares the board index of each square, in search order
+   * @param constraints for each constraint, the squares it covers
+   * @param needs for each constraint, the number of mines among its squares
+   */
+  Component(int[] squares, int[][] constraints, int[] needs) {
+    this.squares = squares;
+    this.constraints = constraints;
+    this.needs = needs;
+
+    int size = squares.length;
+    int[] degree = new int[size];
+
+    for (int[] constraint : constraints) {
+      for (int square : constraint) {
+        degree[square]++;
+      }
+    }
+
+    constraintsOf = new int[size][];
+
+    for (int i = 0; i < size; i++) {
+      constraintsOf[i] = new int[degree[i]];
+      degree[i] = 0;
+    }
+
+    for (int c = 0; c < constraints.length; c++) {
+      for (int square : constraints[c]) {
+        constraintsOf[square][degree[square]++] = c;
+      }
+    }
+
+    weights = new double[size + 1];
+    mineWeights = new double[size + 1][];
+    need = new int[constraints.length];
+    free = new int[constraints.length];
+    bits = new long[(size + 63) >>> 6];
+  }
+
+  int size() {
+    return squares.length;
+  }
+
+  int getSquare(int i) {
+    return squares[i];
+  }
+
+  boolean isExact() {
+    return exact;
+  }
+
+  boolean isSolved() {
+    return solved;
+  }
+
+  double getLogOdds() {
+    return logOdds;
+  }
+
+  double getWeight(int mines) {
+    return weights[mines];
+  }
+
+  double getMineWeight(int mines, int i) {
+    return mineWeights[mines] == null ? 0 : mineWeights[mines][i];
+  }
+
+  /**
+   * Counts every layout of the component by backtracking.
+   *
+   * @return false if {@code deadline} passed first; the counts are then
+   *         incomplete and must be discarded
+   */
+  boolean enumerate(long deadline) {
+    boolean done = search(deadline);
+
+    exact = done;
+    solved = done;
+    return done;
+  }
+
+  /**
+   * Estimates the layouts by importance sampling. Each sample assigns the
+   * squares in order without backtracking: where both values fit, a mine is
+   * chosen with probability {@code density}; where one fits, it is taken; and
+   * where neither does, the sample is dropped. Every layout can be reached
+   * this way, and each one found is weighted by the inverse of the chance of
+   * drawing it, so the weights estimate the counts without bias. The part of
+   * that chance that depends only on the number of mines is left to
+   * {@link #getLogOdds()}, which keeps the weights in the range of a
+   * {@code double}.
+   *
+   * @return false if no layout was found before {@code deadline}
+   */
+  boolean sample(long deadline, Random random, double density) {
+    int size = squares.length;
+    double logMine = Math.log(density);
+    double logSafe = Math.log(1 - density);
+    int found = 0;
+
+    clearWeights();
+    logOdds = logMine - logSafe;
+    logScale = Double.NEGATIVE_INFINITY;
+
+    for (int tries = 0; found < MAX_SAMPLES; tries++) {
+      if (tries % 16 == 0 && System.nanoTime() - deadline > 0) {
+        break;
+      }
+
+      // The log of the chance that independent squares of this density
+      // take the forced values, which is all that separates the weight of
+      // this layout from exp(-k * logOdds).
+      double logWeight = 0;
+      int depth = 0;
+
+      reset();
+
+      for (; depth < size; depth++) {
+        boolean safe = fits(depth, 0);
+        boolean mine = fits(depth, 1);
+        int value;
+
+        if (safe && mine) {
+          value = random.nextDouble() < density ? 1 : 0;
+        } else if (safe) {
+          value = 0;
+          logWeight += logSafe;
+        } else if (mine) {
+          value = 1;
+          logWeight += logMine;
+        } else {
+          break;
+        }
+
+        apply(depth, value);
+      }
+
+      if (depth == size) {
+        record(logWeight);
+        found++;
+      }
+    }
+
+    exact = false;
+    solved = found > 0;
+    return solved;
+  }
+
+  /**
+   * Counts the layouts by backtracking over the squares in order.
+   *
+   * @return true if the search space was exhausted
+   */
+  private boolean search(long deadline) {
+    int size = squares.length;
+    int[] next = new int[size + 1];
+    int[] assigned = new int[size + 1];
+    long steps = 0;
+
+    reset();
+    clearWeights();
+    logOdds = 0;
+    logScale = 0;
+    assigned[0] = -1;
+
+    int depth = 0;
+
+    while (depth >= 0) {
+      if (++steps % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+        return false;
+      }
+
+      if (depth == size) {
+        record(0);
+        depth--;
+        continue;
+      }
+
+      if (assigned[depth] >= 0) {
+        undo(depth, assigned[depth]);
+        assigned[depth] = -1;
+      }
+
+      if (next[depth] > 1) {
+        depth--;
+        continue;
+      }
+
+      int value = next[depth]++;
+
+      if (fits(depth, value)) {
+        apply(depth, value);
+        assigned[depth] = value;
+        depth++;
+        next[depth] = 0;
+        assigned[depth] = -1;
+      }
+    }
+
+    return true;
+  }
+
+  private void reset() {
+    for (int c = 0; c < constraints.length; c++) {
+      need[c] = needs[c];
+      free[c] = constraints[c].length;
+    }
+
+    Arrays.fill(bits, 0);
+    mineCount = 0;
+  }
+
+  private void clearWeights() {
+    Arrays.fill(weights, 0);
+    Arrays.fill(mineWeights, null);
+  }
+
+  private boolean fits(int square, int value) {
+    for (int c : constraintsOf[square]) {
+      int left = need[c] - value;
+
+      if (left < 0 || left > free[c] - 1) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private void apply(int square, int value) {
+    for (int c : constraintsOf[square]) {
+      need[c] -= value;
+      free[c]--;
+    }
+
+    if (value == 1) {
+      bits[square >>> 6] |= 1L << square;
+      mineCount++;
+    }
+  }
+
+  private void undo(int square, int value) {
+    for (int c : constraintsOf[square]) {
+      need[c] += value;
+      free[c]++;
+    }
+
+    if (value == 1) {
+      bits[square >>> 6] &= ~(1L << square);
+      mineCount--;
+    }
+  }
+
+  /**
+   * Adds the current layout with weight {@code exp(logWeight)}. Weights are
+   * kept relative to the largest seen, rescaling the earlier ones when a
+   * larger one turns up.
+   */
+  private void record(double logWeight) {
+    if (logWeight > logScale) {
+      double factor = Math.exp(logScale - logWeight);
+
+      for (int k = 0; k < weights.length; k++) {
+        weights[k] *= factor;
+
+        if (mineWeights[k] != null) {
+          for (int i = 0; i < mineWeights[k].length; i++) {
+            mineWeights[k][i] *= factor;
+          }
+        }
+      }
+
+      logScale = logWeight;
+    }
+
+    double weight = Math.exp(logWeight - logScale);
+    weights[mineCount] += weight;
+
+    double[] counts = mineWeights[mineCount];
+
+    if (counts == null) {
+      counts = mineWeights[mineCount] = new double[squares.length];
+    }
+
+    for (int word = 0; word < bits.length; word++) {
+      for (long w = bits[word]; w != 0; w &= w - 1) {
+        counts[(word << 6) + Long.numberOfTrailingZeros(w)] += weight;
+      }
+    }
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.foobar.minesweeper.model.MineLayout;
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Minefield.State;
+import org.foobar.minesweeper.model.Square;
+
+/**
+ * Places mines so that the game can be won from the first square by logic
+ * alone, without guessing.
+ *
+ * <p>
+ * Candidate layouts keep the first square and its neighbors clear, so the
+ * game starts with an opening, and are played out with a {@link Solver}. A
+ * layout is accepted if the solver wins it. Most random layouts fail, so
+ * several are tried at once on a ForkJoin pool and the first accepted one
+ * wins. If none is accepted within the time budget, the first candidate
+ * that was rejected is used anyway and the miss is counted in
+ * {@link #getTimeoutCount()}.
+ *
+ * <p>
+ * This class is thread-safe.
+ */
+public final class NoGuessGenerator implements MineLayout {
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private long budget = TimeUnit.MILLISECONDS.toNanos(50);
+
+  private final AtomicLong layouts = new AtomicLong();
+  private final AtomicLong candidates = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong latency = new AtomicLong();
+
+  /**
+   * Sets the time {@link #place} may spend looking for a layout. The default
+   * is 50 milliseconds.
+   *
+   * @return this generator
+   */
+  public NoGuessGenerator setTimeBudget(long time, TimeUnit unit) {
+    checkArgument(time > 0, "time must be positive: %s", time);
+    this.budget = unit.toNanos(time);
+    return this;
+  }
+
+  /**
+   * Sets the pool candidates are tried on and how many are tried at once.
+   * The default is the common pool, with one candidate per processor.
+   *
+   * @return this generator
+   */
+  public NoGuessGenerator setPool(ForkJoinPool pool, int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+    this.pool = checkNotNull(pool);
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  @Override public int[] place(int rows, int columns, int mines, int first, Random random) {
+    long start = System.nanoTime();
+    long deadline = start + budget;
+    AtomicReference<int[]> accepted = new AtomicReference<>();
+    AtomicReference<int[]> fallback = new AtomicReference<>();
+    List<ForkJoinTask<?>> tasks = new ArrayList<>(parallelism);
+
+    for (int i = 0; i < parallelism; i++) {
+      Random taskRandom = new Random(random.nextLong());
+
+      tasks.add(pool.submit(() -> search(rows, columns, mines, first, taskRandom, deadline,
+          accepted, fallback)));
+    }
+
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+
+    int[] result = accepted.get();
+
+    if (result == null) {
+      timeouts.incrementAndGet();
+      result = fallback.get();
+    }
+
+    layouts.incrementAndGet();
+    latency.addAndGet(System.nanoTime() - start);
+    return result;
+  }
+
+  /**
+   * Gets the number of layouts placed.
+   */
+  public long getLayoutCount() {
+    return layouts.get();
+  }
+
+  /**
+   * Gets the number of candidate layouts played out.
+   */
+  public long getCandidateCount() {
+    return candidates.get();
+  }
+
+  /**
+   * Gets the number of layouts that had to be placed without being proven
+   * solvable.
+   */
+  public long getTimeoutCount() {
+    return timeouts.get();
+  }
+
+  /**
+   * Gets the share of candidates that were accepted.
+   *
+   * @return a ratio from 0 to 1, or 0 if nothing was placed yet
+   */
+  public double getAcceptanceRate() {
+    long tried = candidates.get();
+    return tried == 0 ? 0 : (double) (layouts.get() - timeouts.get()) / tried;
+  }
+
+  /**
+   * Gets the mean time {@link #place} took.
+   *
+   * @return the mean latency in nanoseconds, or 0 if nothing was placed yet
+   */
+  public long getMeanLatency() {
+    long count = layouts.get();
+    return count == 0 ? 0 : latency.get() / count;
+  }
+
+  @Override public String toString() {
+    return String.format("%d layouts, %d candidates, acceptance %.4f, %d timeouts, %.2f ms mean",
+        getLayoutCount(), getCandidateCount(), getAcceptanceRate(), getTimeoutCount(),
+        getMeanLatency() / 1e6);
+  }
+
+  /**
+   * Tries candidates until one is accepted, by this or another task, or the
+   * deadline passes.
+   */
+  private void search(int rows, int columns, int mines, int first, Random random, long deadline,
+      AtomicReference<int[]> accepted, AtomicReference<int[]> fallback) {
+    int[] free = new int[rows * columns];
+
+    do {
+      int[] candidate = candidate(rows, columns, mines, first, random, free);
+      candidates.incrementAndGet();
+
+      if (solvable(rows, columns, mines, first, candidate)) {
+        accepted.compareAndSet(null, candidate);
+        return;
+      }
+
+      fallback.compareAndSet(null, candidate);
+    } while (accepted.get() == null && System.nanoTime() - deadline < 0);
+  }
+
+  /**
+   * Chooses the mines uniformly among the squares not next to {@code first},
+   * or among all squares but {@code first} if the board is too dense for an
+   * opening.
+   */
+  private static int[] candidate(int rows, int columns, int mines, int first, Random random,
+      int[] free) {
+    int row = first / columns;
+    int column = first % columns;
+    boolean opening = rows * columns - 9 >= mines;
+    int size = 0;
+
+    for (int index = 0; index < rows * columns; index++) {
+      boolean near = Math.abs(index / columns - row) <= 1
+          && Math.abs(index % columns - column) <= 1;
+
+      if (index != first && !(opening && near)) {
+        free[size++] = index;
+      }
+    }
+
+    // A partial Fisher-Yates shuffle; the first mines entries are chosen.
+    int[] placed = new int[mines];
+
+    for (int i = 0; i < mines; i++) {
+      int j = i + random.nextInt(size - i);
+      int chosen = free[j];
+      free[j] = free[i];
+      free[i] = chosen;
+      placed[i] = chosen;
+    }
+
+    return placed;
+  }
+
+  private static boolean solvable(int rows, int columns, int mines, int first, int[] candidate) {
+    Minefield field = new Minefield(rows, columns, mines);
+    field.setInstrumented(false);
+    field.setLayout((r, c, m, f, random) -> candidate);
+
+    Solver solver = new Solver(field);
+    field.getSquare(first / columns, first % columns).reveal();
+
+    while (field.getState() == State.PLAYING) {
+      solver.solve();
+      Square safe = solver.findSafe();
+
+      if (safe == null) {
+        break;
+      }
+
+      safe.reveal();
+    }
+
+    return field.getState() == State.WON;
+  }
+}
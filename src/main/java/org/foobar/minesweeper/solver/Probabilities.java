@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.solver;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Square;
+
+/**
+ * The chance that each square of a {@code Minefield} holds a mine, as
+ * computed by a {@link ProbabilityEngine}. This is a snapshot: it describes
+ * the board as it was when it was computed, including which squares were
+ * covered and flagged then.
+ */
+public final class Probabilities {
+  private final Minefield field;
+  private final BitSet covered;
+  private final BitSet flagged;
+  private final int[] frontier;
+  private final double[] chances;
+  private final double interior;
+  private final boolean exact;
+
+  /**
+   * @param covered the squares that were covered and not flagged
+   * @param flagged the squares that were flagged
+   */
+  Probabilities(Minefield field, BitSet covered, BitSet flagged, int[] frontier,
+      double[] chances, double interior, boolean exact) {
+    this.field = field;
+    this.covered = covered;
+    this.flagged = flagged;
+    this.frontier = frontier;
+    this.chances = chances;
+    this.interior = interior;
+    this.exact = exact;
+  }
+
+  /**
+   * Gets the chance that a square holds a mine. Exposed squares have no
+   * chance and flagged squares are taken to be mines.
+   *
+   * @return a probability from 0 to 1
+   */
+  public double get(int row, int column) {
+    int index = row * field.getColumnCount() + column;
+
+    if (flagged.get(index)) {
+      return 1;
+    } else if (!covered.get(index)) {
+      return 0;
+    }
+
+    int i = Arrays.binarySearch(frontier, index);
+
+    return i >= 0 ? chances[i] : interior;
+  }
+
+  /**
+   * Gets the chance that a covered square with no exposed neighbor holds a
+   * mine. All such squares are alike.
+   *
+   * @return a probability from 0 to 1
+   */
+  public double getInteriorProbability() {
+    return interior;
+  }
+
+  /**
+   * Finds the covered, unflagged square least likely to hold a mine.
+   *
+   * @return the safest square, or null if every square is exposed or flagged
+   */
+  public Square findSafest() {
+    int columns = field.getColumnCount();
+    int best = -1;
+    double bestChance = 2;
+
+    for (int i = 0; i < frontier.length; i++) {
+      if (chances[i] < bestChance) {
+        best = frontier[i];
+        bestChance = chances[i];
+      }
+    }
+
+    if (interior < bestChance) {
+      int next = 0;
+
+      for (int index = covered.nextSetBit(0); index >= 0; index = covered.nextSetBit(index + 1)) {
+        while (next < frontier.length && frontier[next] < index) {
+          next++;
+        }
+
+        if (next == frontier.length || frontier[next] != index) {
+          return field.getSquare(index / columns, index % columns);
+        }
+      }
+    }
+
+    return best < 0 ? null : field.getSquare(best / columns, best % columns);
+  }
+
+  /**
+   * Determines whether every frontier component was enumerated in full. If
+   * not, some chances were estimated by sampling.
+   *
+   * @return true if the chances are exact
+   */
+  public boolean isExact() {
+    return exact;
+  }
+}
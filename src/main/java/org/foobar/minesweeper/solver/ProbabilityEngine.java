@@ -0,0 +1,506 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.solver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Square;
+import org.foobar.minesweeper.model.Squares;
+
+/**
+ * Computes the exact chance that each covered square of a {@code Minefield}
+ * holds a mine, given the exposed numbers, the flags and the total number of
+ * mines. Flags are trusted to be correct.
+ *
+ * <p>
+ * The covered squares next to a number form the frontier. The frontier is
+ * split into components that share no number, and each component's mine
+ * layouts are counted by backtracking, in parallel. The counts are then
+ * combined with the number of ways to place the remaining mines among the
+ * other covered squares. These weights easily exceed the range of a
+ * {@code double}, so they are combined as logarithms.
+ *
+ * <p>
+ * Enumeration is exponential in the size of a component. Components that
+ * are not counted within half of the time budget are sampled for the rest
+ * of it, and their weighted samples stand in for the counts. Components
+ * without a single sample are treated like squares with no exposed
+ * neighbor.
+ */
+public final class ProbabilityEngine {
+  private final Minefield field;
+  private final Random random;
+  private ForkJoinPool pool = ForkJoinPool.commonPool();
+  private long budget = TimeUnit.MILLISECONDS.toNanos(250);
+
+  /**
+   * Creates a {@code ProbabilityEngine} for {@code field}.
+   *
+   * @param field the game to analyze
+   */
+  public ProbabilityEngine(Minefield field) {
+    this(field, new Random());
+  }
+
+  ProbabilityEngine(Minefield field, Random random) {
+    this.field = checkNotNull(field);
+    this.random = random;
+  }
+
+  /**
+   * Sets the time {@link #compute()} may take. The default is 250
+   * milliseconds.
+   *
+   * @return this engine
+   */
+  public ProbabilityEngine setTimeBudget(long time, TimeUnit unit) {
+    checkArgument(time > 0, "time must be positive: %s", time);
+    this.budget = unit.toNanos(time);
+    return this;
+  }
+
+  /**
+   * Sets the pool that components are solved on. The default is the common
+   * pool.
+   *
+   * @return this engine
+   */
+  public ProbabilityEngine setPool(ForkJoinPool pool) {
+    this.pool = checkNotNull(pool);
+    return this;
+  }
+
+  /**
+   * Computes the chance of a mine for every square of the current board.
+   *
+   * @return the chances
+   * @throws IllegalStateException if the game is over, or if no layout of
+   *           mines fits the board, which happens when a flag is wrong
+   */
+  public Probabilities compute() {
+    checkState(!field.isGameOver(), "the game is over");
+
+    long start = System.nanoTime();
+    int rows = field.getRowCount();
+    int columns = field.getColumnCount();
+    int[] variable = new int[rows * columns];
+    int[] frontier = new int[16];
+    int frontierSize = 0;
+    List<int[]> constraints = new ArrayList<>();
+    List<Integer> needs = new ArrayList<>();
+    BitSet blanks = new BitSet(rows * columns);
+    BitSet flagged = new BitSet(rows * columns);
+    int flags = 0;
+    int covered = 0;
+
+    Arrays.fill(variable, -1);
+
+    for (int index = 0; index < rows * columns; index++) {
+      Squares type = square(index).getType();
+
+      if (type == Squares.FLAG) {
+        flagged.set(index);
+        flags++;
+      } else if (type == Squares.BLANK) {
+        blanks.set(index);
+        covered++;
+      } else if (type == Squares.EXPOSED) {
+        int[] neighbors = new int[8];
+        int size = 0;
+        int need = square(index).getMineCount();
+        int row = index / columns;
+        int column = index % columns;
+
+        for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+          for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, columns - 1); c++) {
+            int neighbor = r * columns + c;
+            Squares neighborType = square(neighbor).getType();
+
+            if (neighborType == Squares.FLAG) {
+              need--;
+            } else if (neighborType == Squares.BLANK) {
+              if (variable[neighbor] < 0) {
+                if (frontierSize == frontier.length) {
+                  frontier = Arrays.copyOf(frontier, frontierSize * 2);
+                }
+
+                variable[neighbor] = frontierSize;
+                frontier[frontierSize++] = neighbor;
+              }
+
+              neighbors[size++] = variable[neighbor];
+            }
+          }
+        }
+
+        if (size > 0) {
+          constraints.add(Arrays.copyOf(neighbors, size));
+          needs.add(need);
+        }
+      }
+    }
+
+    // Variables were numbered in the order they were first seen, which is
+    // not board order; renumber them so the frontier is sorted.
+    frontier = Arrays.copyOf(frontier, frontierSize);
+    int[] sorted = frontier.clone();
+    Arrays.sort(sorted);
+
+    for (int i = 0; i < frontierSize; i++) {
+      variable[sorted[i]] = i;
+    }
+
+    int[] renumber = new int[frontierSize];
+
+    for (int i = 0; i < frontierSize; i++) {
+      renumber[i] = variable[frontier[i]];
+    }
+
+    for (int[] constraint : constraints) {
+      for (int i = 0; i < constraint.length; i++) {
+        constraint[i] = renumber[constraint[i]];
+      }
+    }
+
+    List<Component> components = split(sorted, constraints, needs);
+    int mines = field.getMines() - flags;
+    solve(components, start, Math.min(Math.max((double) mines / covered, 0.01), 0.99));
+
+    double[] chances = new double[frontierSize];
+    double interior = combine(components, sorted, chances, mines, covered - frontierSize);
+    boolean exact = true;
+
+    for (Component component : components) {
+      exact &= component.isExact();
+    }
+
+    return new Probabilities(field, blanks, flagged, sorted, chances, interior, exact);
+  }
+
+  /**
+   * Groups the frontier into components connected by shared constraints,
+   * numbering the squares of each in breadth-first order so that
+   * constraints are completed early in the search.
+   */
+  private static List<Component> split(int[] frontier, List<int[]> constraints,
+      List<Integer> needs) {
+    int size = frontier.length;
+    int[][] constraintsOf = new int[size][];
+    int[] degree = new int[size];
+
+    for (int[] constraint : constraints) {
+      for (int square : constraint) {
+        degree[square]++;
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      constraintsOf[i] = new int[degree[i]];
+      degree[i] = 0;
+    }
+
+    for (int c = 0; c < constraints.size(); c++) {
+      for (int square : constraints.get(c)) {
+        constraintsOf[square][degree[square]++] = c;
+      }
+    }
+
+    List<Component> components = new ArrayList<>();
+    int[] local = new int[size];
+    int[] localConstraint = new int[constraints.size()];
+    boolean[] seen = new boolean[size];
+    int[] order = new int[size];
+
+    Arrays.fill(localConstraint, -1);
+
+    for (int root = 0; root < size; root++) {
+      if (seen[root]) {
+        continue;
+      }
+
+      int count = 0;
+      List<Integer> members = new ArrayList<>();
+      order[count++] = root;
+      seen[root] = true;
+
+      for (int head = 0; head < count; head++) {
+        int square = order[head];
+        local[square] = head;
+
+        for (int c : constraintsOf[square]) {
+          if (localConstraint[c] < 0) {
+            localConstraint[c] = members.size();
+            members.add(c);
+
+            for (int other : constraints.get(c)) {
+              if (!seen[other]) {
+                seen[other] = true;
+                order[count++] = other;
+              }
+            }
+          }
+        }
+      }
+
+      int[] squares = new int[count];
+      int[][] componentConstraints = new int[members.size()][];
+      int[] componentNeeds = new int[members.size()];
+
+      for (int i = 0; i < count; i++) {
+        squares[i] = frontier[order[i]];
+      }
+
+      for (int i = 0; i < members.size(); i++) {
+        int[] constraint = constraints.get(members.get(i));
+        componentConstraints[i] = new int[constraint.length];
+        componentNeeds[i] = needs.get(members.get(i));
+
+        for (int j = 0; j < constraint.length; j++) {
+          componentConstraints[i][j] = local[constraint[j]];
+        }
+      }
+
+      components.add(new Component(squares, componentConstraints, componentNeeds));
+    }
+
+    // Start the largest components first so they get the most time.
+    Collections.sort(components, (a, b) -> Integer.compare(b.size(), a.size()));
+    return components;
+  }
+
+  /**
+   * Solves the components in parallel, sampling those that cannot be
+   * enumerated in time.
+   *
+   * @param density the share of covered squares that hold a mine
+   */
+  private void solve(List<Component> components, long start, double density) {
+    long enumerateBy = start + budget / 2;
+    long sampleBy = start + budget;
+    List<RecursiveAction> tasks = new ArrayList<>(components.size());
+
+    for (Component component : components) {
+      Random componentRandom = new Random(random.nextLong());
+
+      tasks.add(new RecursiveAction() {
+        @Override protected void compute() {
+          if (!component.enumerate(enumerateBy)) {
+            component.sample(sampleBy, componentRandom, density);
+          }
+        }
+      });
+    }
+
+    pool.invoke(new RecursiveAction() {
+      @Override protected void compute() {
+        invokeAll(tasks);
+      }
+    });
+  }
+
+  /**
+   * Combines the component counts with the global mine count.
+   *
+   * @param mines the number of mines not flagged
+   * @param rest the number of covered squares outside the frontier
+   * @return the chance of a mine for a square outside the frontier
+   */
+  private static double combine(List<Component> components, int[] frontier, double[] chances,
+      int mines, int rest) {
+    List<Component> solved = new ArrayList<>();
+
+    for (Component component : components) {
+      if (component.isSolved()) {
+        solved.add(component);
+      } else {
+        rest += component.size();
+      }
+    }
+
+    // Logarithms of the weights of the components before and after each
+    // one, as distributions over the number of mines they hold.
+    int count = solved.size();
+    double[][] prefix = new double[count + 1][];
+    double[][] suffix = new double[count + 1][];
+    prefix[0] = new double[] { 0 };
+    suffix[count] = new double[] { 0 };
+
+    for (int i = 0; i < count; i++) {
+      prefix[i + 1] = convolve(prefix[i], logWeights(solved.get(i)));
+    }
+
+    for (int i = count - 1; i >= 0; i--) {
+      suffix[i] = convolve(logWeights(solved.get(i)), suffix[i + 1]);
+    }
+
+    double[] logFactorial = new double[rest + 1];
+
+    for (int i = 1; i <= rest; i++) {
+      logFactorial[i] = logFactorial[i - 1] + Math.log(i);
+    }
+
+    // The interior: the expected number of mines it holds over all layouts.
+    double[] all = prefix[count];
+    double[] total = new double[all.length];
+    double[] interiorMines = new double[all.length];
+
+    for (int k = 0; k < all.length; k++) {
+      total[k] = all[k] + logChoose(logFactorial, rest, mines - k);
+      interiorMines[k] = mines - k > 0 ? total[k] + Math.log(mines - k)
+          : Double.NEGATIVE_INFINITY;
+    }
+
+    double logTotal = logSum(total);
+    checkState(logTotal != Double.NEGATIVE_INFINITY,
+        "no mine layout fits the board; is a flag wrong?");
+    double interior = rest == 0 ? 0 : Math.exp(logSum(interiorMines) - logTotal) / rest;
+
+    for (int i = 0; i < solved.size(); i++) {
+      Component component = solved.get(i);
+      double[] others = convolve(prefix[i], suffix[i + 1]);
+      int size = component.size();
+
+      // The log weight of the rest of the board for each mine count of this
+      // component.
+      double[] outside = new double[size + 1];
+
+      for (int k = 0; k <= size; k++) {
+        double[] terms = new double[others.length];
+
+        for (int j = 0; j < others.length; j++) {
+          terms[j] = others[j] + logChoose(logFactorial, rest, mines - k - j);
+        }
+
+        outside[k] = logSum(terms) - k * component.getLogOdds();
+      }
+
+      double max = Double.NEGATIVE_INFINITY;
+
+      for (double value : outside) {
+        max = Math.max(max, value);
+      }
+
+      double denominator = 0;
+
+      for (int k = 0; k <= size; k++) {
+        outside[k] = Math.exp(outside[k] - max);
+        denominator += component.getWeight(k) * outside[k];
+      }
+
+      for (int s = 0; s < size; s++) {
+        double numerator = 0;
+
+        for (int k = 1; k <= size; k++) {
+          numerator += component.getMineWeight(k, s) * outside[k];
+        }
+
+        chances[Arrays.binarySearch(frontier, component.getSquare(s))] = denominator > 0
+            ? numerator / denominator : 0;
+      }
+    }
+
+    for (Component component : components) {
+      if (!component.isSolved()) {
+        for (int s = 0; s < component.size(); s++) {
+          chances[Arrays.binarySearch(frontier, component.getSquare(s))] = interior;
+        }
+      }
+    }
+
+    return interior;
+  }
+
+  private static double[] logWeights(Component component) {
+    double[] weights = new double[component.size() + 1];
+
+    for (int k = 0; k < weights.length; k++) {
+      weights[k] = Math.log(component.getWeight(k)) - k * component.getLogOdds();
+    }
+
+    return weights;
+  }
+
+  /**
+   * Convolves two distributions held as logarithms.
+   */
+  private static double[] convolve(double[] a, double[] b) {
+    double[] result = new double[a.length + b.length - 1];
+    double[] terms = new double[Math.min(a.length, b.length)];
+
+    for (int k = 0; k < result.length; k++) {
+      int size = 0;
+
+      for (int i = Math.max(0, k - b.length + 1); i <= Math.min(k, a.length - 1); i++) {
+        terms[size++] = a[i] + b[k - i];
+      }
+
+      result[k] = logSum(terms, size);
+    }
+
+    return result;
+  }
+
+  private static double logChoose(double[] logFactorial, int n, int k) {
+    if (k < 0 || k > n) {
+      return Double.NEGATIVE_INFINITY;
+    }
+
+    return logFactorial[n] - logFactorial[k] - logFactorial[n - k];
+  }
+
+  private static double logSum(double[] values) {
+    return logSum(values, values.length);
+  }
+
+  private static double logSum(double[] values, int size) {
+    double max = Double.NEGATIVE_INFINITY;
+
+    for (int i = 0; i < size; i++) {
+      max = Math.max(max, values[i]);
+    }
+
+    if (max == Double.NEGATIVE_INFINITY) {
+      return max;
+    }
+
+    double sum = 0;
+
+    for (int i = 0; i < size; i++) {
+      sum += Math.exp(values[i] - max);
+    }
+
+    return max + Math.log(sum);
+  }
+
+  private Square square(int index) {
+    int columns = field.getColumnCount();
+    return field.getSquare(index / columns, index % columns);
+  }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2012, 2013 Evan Flynn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.foobar.minesweeper.solver;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.foobar.minesweeper.model.ChangeSet;
+import org.foobar.minesweeper.model.HandlerRegistration;
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Minefield.FieldHandler;
+import org.foobar.minesweeper.model.Minefield.State;
+import org.foobar.minesweeper.model.Square;
+import org.foobar.minesweeper.model.Squares;
+
+/**
+ * Finds squares of a {@code Minefield} that are provably safe or provably
+ * mined, using only the exposed numbers and the flags. Flags are trusted to
+ * be correct.
+ *
+ * <p>
+ * Every exposed number is a constraint: its covered neighbors that are not
+ * flagged or known to be mines hold exactly as many mines as the number has
+ * left over. The solver applies two rules to these constraints:
+ * <ul>
+ * <li>a constraint with no mines left makes all its squares safe, and one
+ * with as many mines left as squares makes them all mines;
+ * <li>if the squares of one constraint are a subset of another's, the
+ * squares only in the larger one hold the difference of their mines, which
+ * may again be none or all of them.
+ * </ul>
+ *
+ * <p>
+ * The solver listens to the minefield and keeps a queue of constraints that
+ * may have changed, so {@link #solve()} only looks at the frontier touched by
+ * the moves since its last call.
+ *
+ * This class is not thread-safe.
+ */
+public final class Solver {
+  private final Minefield field;
+  private final int rows;
+  private final int columns;
+  private final BitSet safe = new BitSet();
+  private final BitSet mines = new BitSet();
+  private final BitSet queued = new BitSet();
+  private final HandlerRegistration registration;
+  private int[] queue = new int[64];
+  private int head;
+  private int tail;
+  private int searchFrom;
+
+  // Scratch space for the squares of two constraints and their difference.
+  private final int[] first = new int[8];
+  private final int[] second = new int[8];
+  private final int[] rest = new int[8];
+
+  /**
+   * Creates a {@code Solver} and attaches it to {@code field}.
+   *
+   * @param field the game to solve
+   */
+  public Solver(Minefield field) {
+    this.field = field;
+    this.rows = field.getRowCount();
+    this.columns = field.getColumnCount();
+
+    registration = field.addFieldHandler(new FieldHandler() {
+      @Override public void updateSquare(Square square) {
+        enqueueAround(square.getRow() * columns + square.getColumn());
+      }
+
+      @Override public void updateSquares(ChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+          enqueueAround(changes.getRow(i) * columns + changes.getColumn(i));
+        }
+      }
+
+      @Override public void updateBoard() {
+        restart();
+      }
+
+      @Override public void changeState(State state) {
+      }
+    });
+  }
+
+  /**
+   * Stops listening to the minefield.
+   */
+  public void detach() {
+    registration.removeHandler();
+  }
+
+  /**
+   * Applies the rules to every queued constraint until nothing more can be
+   * deduced.
+   *
+   * @return the number of squares newly found safe or mined
+   */
+  public int solve() {
+    int found = 0;
+
+    while (head != tail) {
+      int index = queue[head];
+      head = (head + 1) % queue.length;
+      queued.clear(index);
+
+      found += examine(index);
+    }
+
+    return found;
+  }
+
+  /**
+   * Determines whether the square is known to be safe.
+   *
+   * @return true if the square was deduced to be safe
+   */
+  public boolean isSafe(int row, int column) {
+    return safe.get(row * columns + column);
+  }
+
+  /**
+   * Determines whether the square is known to hold a mine.
+   *
+   * @return true if the square was deduced to be a mine
+   */
+  public boolean isMine(int row, int column) {
+    return mines.get(row * columns + column);
+  }
+
+  /**
+   * Finds a covered square known to be safe.
+   *
+   * @return a safe square that can be revealed, or null if none is known
+   */
+  public Square findSafe() {
+    // Squares before searchFrom were revealed already, unless they were
+    // found after the last search passed them; look there second.
+    Square square = findSafe(searchFrom, rows * columns);
+
+    if (square == null) {
+      square = findSafe(0, searchFrom);
+    }
+
+    return square;
+  }
+
+  private Square findSafe(int from, int to) {
+    for (int index = safe.nextSetBit(from); index >= 0 && index < to;
+        index = safe.nextSetBit(index + 1)) {
+      Square square = square(index);
+
+      if (square.getType() == Squares.BLANK) {
+        searchFrom = index;
+        return square;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Gets the number of squares known to hold a mine.
+   *
+   * @return the number of deduced mines
+   */
+  public int getMineCount() {
+    return mines.cardinality();
+  }
+
+  private void restart() {
+    safe.clear();
+    mines.clear();
+    queued.clear();
+    head = 0;
+    tail = 0;
+    searchFrom = 0;
+
+    if (field.getState() == State.START) {
+      return;
+    }
+
+    for (int index = 0; index < rows * columns; index++) {
+      if (square(index).getType() == Squares.EXPOSED) {
+        enqueue(index);
+      }
+    }
+  }
+
+  /**
+   * Queues the constraints a change to {@code index} can affect: the square
+   * itself, if it is a number, and the numbers next to it.
+   */
+  private void enqueueAround(int index) {
+    int row = index / columns;
+    int column = index % columns;
+
+    for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+      for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, columns - 1); c++) {
+        int neighbor = r * columns + c;
+
+        if (square(neighbor).getType() == Squares.EXPOSED) {
+          enqueue(neighbor);
+        }
+      }
+    }
+  }
+
+  private void enqueue(int index) {
+    if (queued.get(index)) {
+      return;
+    }
+
+    int size = (tail - head + queue.length) % queue.length;
+
+    if (size == queue.length - 1) {
+      int[] grown = new int[queue.length * 2];
+
+      for (int i = 0; i < size; i++) {
+        grown[i] = queue[(head + i) % queue.length];
+      }
+
+      queue = grown;
+      head = 0;
+      tail = size;
+    }
+
+    queue[tail] = index;
+    tail = (tail + 1) % queue.length;
+    queued.set(index);
+  }
+
+  /**
+   * Applies both rules to the constraint at {@code index}, pairing it with
+   * every constraint whose squares can overlap its own.
+   */
+  private int examine(int index) {
+    int size = unknowns(index, first);
+
+    if (size == 0) {
+      return 0;
+    }
+
+    int left = minesLeft(index);
+
+    if (left == 0) {
+      return mark(first, size, safe);
+    } else if (left == size) {
+      return mark(first, size, mines);
+    }
+
+    int row = index / columns;
+    int column = index % columns;
+
+    for (int r = Math.max(row - 2, 0); r <= Math.min(row + 2, rows - 1); r++) {
+      for (int c = Math.max(column - 2, 0); c <= Math.min(column + 2, columns - 1); c++) {
+        int other = r * columns + c;
+
+        if (other == index || square(other).getType() != Squares.EXPOSED) {
+          continue;
+        }
+
+        int otherSize = unknowns(other, second);
+
+        if (otherSize == 0) {
+          continue;
+        }
+
+        int otherLeft = minesLeft(other);
+        int found = applySubset(first, size, left, second, otherSize, otherLeft);
+
+        if (found == 0) {
+          found = applySubset(second, otherSize, otherLeft, first, size, left);
+        }
+
+        // The other pairs are tried when the constraint comes round again,
+        // with the squares just found no longer unknown.
+        if (found > 0) {
+          enqueue(index);
+          return found;
+        }
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * If the squares {@code a} are a subset of {@code b}, deduces the squares
+   * that are only in {@code b}.
+   */
+  private int applySubset(int[] a, int aSize, int aLeft, int[] b, int bSize, int bLeft) {
+    if (aSize >= bSize || !contains(b, bSize, a, aSize)) {
+      return 0;
+    }
+
+    int restSize = 0;
+
+    for (int i = 0; i < bSize; i++) {
+      if (!contains(a, aSize, b[i])) {
+        rest[restSize++] = b[i];
+      }
+    }
+
+    int left = bLeft - aLeft;
+
+    if (left == 0) {
+      return mark(rest, restSize, safe);
+    } else if (left == restSize) {
+      return mark(rest, restSize, mines);
+    }
+
+    return 0;
+  }
+
+  /**
+   * Records the squares as safe or mined and queues the constraints around
+   * them.
+   */
+  private int mark(int[] squares, int size, BitSet set) {
+    int found = 0;
+
+    for (int i = 0; i < size; i++) {
+      if (!set.get(squares[i])) {
+        set.set(squares[i]);
+        enqueueAround(squares[i]);
+        found++;
+      }
+    }
+
+    return found;
+  }
+
+  /**
+   * Collects the neighbors of {@code index} that are covered and neither
+   * flagged nor known mines.
+   *
+   * @return the number of squares written to {@code out}, sorted by index
+   */
+  private int unknowns(int index, int[] out) {
+    int row = index / columns;
+    int column = index % columns;
+    int size = 0;
+
+    for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+      for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, columns - 1); c++) {
+        int neighbor = r * columns + c;
+
+        if (square(neighbor).getType() == Squares.BLANK && !mines.get(neighbor)
+            && !safe.get(neighbor)) {
+          out[size++] = neighbor;
+        }
+      }
+    }
+
+    return size;
+  }
+
+  /**
+   * Gets the number of mines next to the constraint at {@code index} that are
+   * not yet flagged or known.
+   */
+  private int minesLeft(int index) {
+    int row = index / columns;
+    int column = index % columns;
+    int left = square(index).getMineCount();
+
+    for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+      for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, columns - 1); c++) {
+        int neighbor = r * columns + c;
+
+        Squares type = square(neighbor).getType();
+
+        if (type == Squares.FLAG || (type == Squares.BLANK && mines.get(neighbor))) {
+          left--;
+        }
+      }
+    }
+
+    return left;
+  }
+
+  private Square square(int index) {
+    return field.getSquare(index / columns, index % columns);
+  }
+
+  private static boolean contains(int[] set, int size, int[] subset, int subsetSize) {
+    for (int i = 0; i < subsetSize; i++) {
+      if (!contains(set, size, subset[i])) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean contains(int[] set, int size, int value) {
+    return Arrays.binarySearch(set, 0, size, value) >= 0;
+  }
+}
@@ -0,0 +1,51 @@
+package org.foobar.minesweeper.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.foobar.minesweeper.model.Minefield;
+import org.junit.Test;
+
+public class EventsTest {
+  @Test
+  public void onlyEnabledEventsAreRecorded() throws Exception {
+    File file = File.createTempFile("events", ".jfr");
+    file.deleteOnExit();
+
+    try (Recording recording = new Recording()) {
+      recording.enable("org.foobar.minesweeper.Reveal");
+      recording.disable("org.foobar.minesweeper.Cascade");
+      recording.start();
+
+      Minefield field = new Minefield(30, 40, 10);
+      field.getSquare(15, 20).reveal();
+
+      recording.stop();
+      recording.dump(file.toPath());
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+    int reveals = 0;
+
+    for (RecordedEvent event : events) {
+      String name = event.getEventType().getName();
+      assertTrue(name, !name.equals("org.foobar.minesweeper.Cascade"));
+
+      if (name.equals("org.foobar.minesweeper.Reveal")) {
+        assertEquals(30, event.getInt("rows"));
+        assertEquals(40, event.getInt("columns"));
+        assertTrue(event.getLong("squares") > 0);
+        reveals++;
+      }
+    }
+
+    assertEquals(1, reveals);
+  }
+}
@@ -0,0 +1,90 @@
+package org.foobar.minesweeper.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.foobar.minesweeper.model.HandlerRegistration;
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Square;
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsTest {
+  @After
+  public void tearDown() {
+    Metrics.setEnabled(true);
+  }
+
+  @Test
+  public void histogramPercentiles() {
+    Histogram histogram = new Histogram();
+
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(100, snapshot.getCount());
+    assertEquals(50.5, snapshot.getMean(), 1e-9);
+    assertEquals(100, snapshot.getMax());
+    assertEquals(63, snapshot.getP50());
+    assertEquals(100, snapshot.getP99());
+    assertEquals(8, snapshot.getBuckets().length);
+
+    histogram.reset();
+    assertEquals(0, histogram.snapshot().getCount());
+  }
+
+  @Test
+  public void gamesAreCountedAndPublished() throws Exception {
+    GameMetrics game = Metrics.game();
+    long reveals = game.getRevealCount();
+    long flags = game.getFlagCount();
+    long handlers = game.getLiveHandlerCount();
+
+    Minefield field = new Minefield(10, 10, 10);
+    HandlerRegistration registration = field.addFieldHandler(new Minefield.FieldHandler() {
+      @Override public void updateSquare(Square square) {
+      }
+
+      @Override public void updateBoard() {
+      }
+
+      @Override public void changeState(Minefield.State state) {
+      }
+    });
+
+    field.getSquare(0, 0).reveal();
+    field.getSquare(9, 9).toggleFlag();
+
+    Metrics.setEnabled(false);
+    field.getSquare(9, 9).toggleFlag();
+    Metrics.setEnabled(true);
+
+    Minefield probe = new Minefield(10, 10, 10);
+    probe.setInstrumented(false);
+    probe.getSquare(0, 0).reveal();
+
+    assertEquals(reveals + 1, game.getRevealCount());
+    assertEquals(flags + 1, game.getFlagCount());
+    assertEquals(handlers + 1, game.getLiveHandlerCount());
+
+    registration.removeHandler();
+    registration.removeHandler();
+    assertEquals(handlers, game.getLiveHandlerCount());
+
+    Metrics.register();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.foobar.minesweeper:type=Game");
+    CompositeData latency = (CompositeData) server.getAttribute(name, "RevealLatency");
+
+    assertEquals(game.getRevealCount(), server.getAttribute(name, "RevealCount"));
+    assertTrue((Long) latency.get("count") >= 1);
+  }
+}
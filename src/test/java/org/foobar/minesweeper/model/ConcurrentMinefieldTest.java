@@ -0,0 +1,105 @@
+package org.foobar.minesweeper.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.foobar.minesweeper.model.Minefield.State;
+import org.junit.Test;
+
+public class ConcurrentMinefieldTest {
+  private static final int THREADS = 8;
+
+  @Test
+  public void concurrentCascadesExposeEachSquareOnce() throws InterruptedException {
+    for (int game = 0; game < 20; game++) {
+      ConcurrentMinefield field = new ConcurrentMinefield(200, 200, 2000, new Random(game));
+      field.reveal(100, 100);
+
+      run(field, (random) -> {
+        for (int i = 0; i < 40000 && !field.isGameOver(); i++) {
+          int row = random.nextInt(200);
+          int column = random.nextInt(200);
+
+          if (field.getType(row, column) == Squares.BLANK && !field.isMine(row, column)) {
+            field.reveal(row, column);
+          }
+        }
+
+        // Sweep whatever the random moves missed.
+        for (int row = 0; row < 200; row++) {
+          for (int column = 0; column < 200; column++) {
+            if (!field.isMine(row, column)) {
+              field.reveal(row, column);
+            }
+          }
+        }
+      });
+
+      assertEquals(State.WON, field.getState());
+      assertEquals(0, field.getUnrevealedCount());
+    }
+  }
+
+  @Test
+  public void exactlyOneMoveLoses() throws InterruptedException {
+    for (int game = 0; game < 20; game++) {
+      ConcurrentMinefield field = new ConcurrentMinefield(100, 100, 3000, new Random(game));
+      field.reveal(50, 50);
+
+      run(field, (random) -> {
+        while (!field.isGameOver()) {
+          int row = random.nextInt(100);
+          int column = random.nextInt(100);
+
+          if (random.nextInt(3) == 0) {
+            field.toggleFlag(row, column);
+          } else {
+            field.reveal(row, column);
+          }
+        }
+      });
+
+      int hits = 0;
+
+      for (int row = 0; row < 100; row++) {
+        for (int column = 0; column < 100; column++) {
+          Squares type = field.getType(row, column);
+
+          if (type == Squares.HITMINE) {
+            hits++;
+          }
+
+          assertFalse(type == Squares.FLAG);
+        }
+      }
+
+      assertEquals(State.LOST, field.getState());
+      assertEquals(1, hits);
+    }
+  }
+
+  private interface Player {
+    void play(Random random);
+  }
+
+  private static void run(ConcurrentMinefield field, Player player) throws InterruptedException {
+    List<Thread> threads = new ArrayList<>();
+
+    for (int i = 0; i < THREADS; i++) {
+      Random random = new Random(i);
+      threads.add(new Thread(() -> player.play(random)));
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package org.foobar.minesweeper.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void replaysEveryMove() throws IOException {
+    Minefield field = new Minefield(12, 12, 25);
+    Path path = folder.newFile().toPath();
+    Journal journal = Journal.record(field, path);
+    List<Minefield> snapshots = new ArrayList<>();
+    Random random = new Random(9);
+
+    snapshots.add(field.fork());
+
+    for (int move = 0; move < 3000; move++) {
+      Square square = field.getSquare(random.nextInt(12), random.nextInt(12));
+
+      if (field.isGameOver()) {
+        field.reset();
+      } else if (random.nextInt(4) == 0) {
+        square.toggleFlag();
+      } else if (random.nextInt(4) == 0) {
+        square.revealNearby();
+      } else {
+        square.reveal();
+      }
+
+      snapshots.add(field.fork());
+    }
+
+    journal.close();
+
+    Replay replay = Replay.load(path);
+    assertEquals(3000, replay.getMoveCount());
+
+    for (int move : new int[] { 0, 1, 17, 1023, 1024, 1025, 2999, 3000 }) {
+      Minefield expected = snapshots.get(move);
+      Minefield actual = replay.seek(move);
+
+      assertEquals(expected.getState(), actual.getState());
+
+      for (int i = 0; i < 144; i++) {
+        assertEquals(expected.getType(i), actual.getType(i));
+        assertEquals(expected.isMine(i), actual.isMine(i));
+      }
+    }
+  }
+
+  @Test
+  public void replaysGamesWithALayout() throws IOException {
+    // The layout draws from its own Random, so the seed alone cannot
+    // recreate its games.
+    Random own = new Random(5);
+    Minefield field = new Minefield(12, 12, 25);
+    field.setLayout((rows, columns, mines, first, random) -> {
+      BitSet chosen = new BitSet();
+      chosen.set(first);
+
+      while (chosen.cardinality() <= mines) {
+        chosen.set(own.nextInt(rows * columns));
+      }
+
+      chosen.clear(first);
+      return chosen.stream().toArray();
+    });
+
+    Path path = folder.newFile().toPath();
+    Journal journal = Journal.record(field, path);
+
+    field.getSquare(6, 6).reveal();
+    Minefield first = field.fork();
+    field.reset();
+    field.getSquare(0, 0).reveal();
+    journal.close();
+
+    Replay replay = Replay.load(path);
+    assertEquals(3, replay.getMoveCount());
+
+    Minefield[] expected = { first, field };
+    Minefield[] actual = { replay.seek(1), replay.seek(3) };
+
+    for (int game = 0; game < 2; game++) {
+      for (int i = 0; i < 144; i++) {
+        assertEquals(expected[game].isMine(i), actual[game].isMine(i));
+        assertEquals(expected[game].getType(i), actual[game].getType(i));
+      }
+    }
+  }
+}
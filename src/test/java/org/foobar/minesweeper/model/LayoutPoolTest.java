@@ -0,0 +1,50 @@
+package org.foobar.minesweeper.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LayoutPoolTest {
+  @Test
+  public void servesClicksInsideTheOpening() throws InterruptedException {
+    LayoutPool pool = new LayoutPool((rows, columns, mines, first, random) -> new int[] { 0 })
+        .setCapacity(2);
+
+    pool.prefetch(10, 10, 1);
+
+    for (int i = 0; i < 500 && pool.getReadyCount(10, 10, 1) < 2; i++) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(2, pool.getReadyCount(10, 10, 1));
+
+    // (9, 9) is in the opening around the center; (1, 1) borders the mine.
+    assertArrayEquals(new int[] { 0 }, pool.place(10, 10, 1, 99, new Random()));
+    assertEquals(1, pool.getHitCount());
+
+    pool.shutdown();
+    pool.place(10, 10, 1, 11, new Random());
+
+    assertEquals(1, pool.getMissCount());
+  }
+
+  @Test
+  public void staysWithinMemoryBudget() throws InterruptedException {
+    LayoutPool pool = new LayoutPool((rows, columns, mines, first, random) -> new int[mines])
+        .setCapacity(100).setMemoryBudget(1000);
+
+    pool.prefetch(10, 10, 50);
+
+    for (int i = 0; i < 100 && pool.getReadyCount(10, 10, 50) == 0; i++) {
+      Thread.sleep(10);
+    }
+
+    Thread.sleep(50);
+    assertTrue(pool.getMemoryUse() <= 1000);
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,47 @@
+package org.foobar.minesweeper.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongMapTest {
+  @Test
+  public void matchesLinkedHashMap() {
+    for (boolean accessOrder : new boolean[] { false, true }) {
+      Random random = new Random(1);
+      LongMap<Long> map = new LongMap<>(accessOrder);
+      Map<Long, Long> expected = new LinkedHashMap<>(16, 0.75f, accessOrder);
+
+      for (int i = 0; i < 100000; i++) {
+        // Few distinct keys, so that removal often shifts a probe chain.
+        long key = (long) random.nextInt(512) << 32 | random.nextInt(4);
+        int operation = random.nextInt(3);
+
+        if (operation == 0) {
+          assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+        } else if (operation == 1) {
+          assertEquals(expected.remove(key), map.remove(key));
+        } else {
+          assertEquals(expected.get(key), map.get(key));
+        }
+
+        assertEquals(expected.size(), map.size());
+      }
+
+      long[] keys = new long[expected.size()];
+      int i = 0;
+
+      for (long key : expected.keySet()) {
+        keys[i++] = key;
+      }
+
+      assertArrayEquals(keys, map.keys());
+      assertEquals(keys[0], map.oldestKey());
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.foobar.minesweeper.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.foobar.minesweeper.model.Minefield.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MinefieldFileTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void roundTrips() throws IOException {
+    Random random = new Random(5);
+
+    for (boolean compress : new boolean[] { false, true }) {
+      for (int game = 0; game < 20; game++) {
+        Minefield field = new Minefield(13, 21, 40, new Random(game));
+
+        field.getSquare(6, 10).reveal();
+
+        while (field.getState() == State.PLAYING && random.nextInt(20) != 0) {
+          Square square = field.getSquare(random.nextInt(13), random.nextInt(21));
+
+          if (random.nextBoolean()) {
+            square.toggleFlag();
+          } else {
+            square.reveal();
+          }
+        }
+
+        Path path = folder.newFile().toPath();
+        MinefieldFile.save(field, path, compress);
+        assertSame(field, MinefieldFile.load(path));
+      }
+    }
+  }
+
+  @Test
+  public void savesNewGames() throws IOException {
+    Minefield field = new Minefield(3, 100, 7);
+    Path path = folder.newFile().toPath();
+
+    MinefieldFile.save(field, path);
+    Minefield loaded = MinefieldFile.load(path);
+
+    assertSame(field, loaded);
+    loaded.getSquare(1, 50).reveal();
+    assertEquals(State.PLAYING, loaded.getState());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    Path path = folder.newFile().toPath();
+    Files.write(path, new byte[100]);
+
+    MinefieldFile.load(path);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsCorruptHeaders() throws IOException {
+    Path path = folder.newFile().toPath();
+    MinefieldFile.save(new Minefield(10, 10, 10), path);
+
+    // Rows and columns whose product overflows an int.
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      ByteBuffer size = ByteBuffer.allocate(8).putInt(1 << 20).putInt(1 << 20);
+      size.flip();
+      channel.write(size, 8);
+    }
+
+    MinefieldFile.load(path);
+  }
+
+  private static void assertSame(Minefield expected, Minefield actual) {
+    assertEquals(expected.getState(), actual.getState());
+    assertEquals(expected.getSeed(), actual.getSeed());
+
+    for (int row = 0; row < expected.getRowCount(); row++) {
+      for (int column = 0; column < expected.getColumnCount(); column++) {
+        Square a = expected.getSquare(row, column);
+        Square b = actual.getSquare(row, column);
+
+        assertEquals(a.getType(), b.getType());
+        assertEquals(a.getMineCount(), b.getMineCount());
+        assertEquals(a.isMine(), b.isMine());
+      }
+    }
+  }
+}
@@ -1,7 +1,10 @@
 package org.foobar.minesweeper.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.management.ManagementFactory;
 import java.util.Random;
 
 import org.junit.Before;
@@ -64,4 +67,196 @@ public class ModelTest {
   public void getOutOfBoundsColumn() {
     field.getSquare(0, 10);
   }
+
+  @Test
+  public void squaresAreViews() {
+    Square square = field.getSquare(3, 4);
+
+    assertEquals(square, field.getSquare(3, 4));
+    assertNotEquals(square, field.getSquare(4, 3));
+
+    square.toggleFlag();
+    assertEquals(Squares.FLAG, field.getSquare(3, 4).getType());
+  }
+
+  @Test
+  public void largeCascade() {
+    field = new Minefield(2000, 2000, 1, random);
+    field.getSquare(1000, 1000).reveal();
+
+    assertEquals(Squares.EXPOSED, field.getSquare(0, 1999).getType());
+    assertEquals(Squares.EXPOSED, field.getSquare(1999, 0).getType());
+    assertEquals(Squares.EXPOSED, field.getSquare(1999, 1999).getType());
+  }
+
+  @Test
+  public void parallelCascadeMatchesSequential() {
+    Minefield sequential = new Minefield(700, 900, 4000, new Random(7));
+    Minefield parallel = new Minefield(700, 900, 4000, new Random(7));
+    parallel.setParallelThreshold(1);
+
+    int[] changed = new int[2];
+    sequential.addFieldHandler(countChanges(changed, 0));
+    parallel.addFieldHandler(countChanges(changed, 1));
+
+    Random moves = new Random(11);
+    int row = 350;
+    int column = 450;
+
+    for (int move = 0; move < 40; move++) {
+      sequential.getSquare(row, column).reveal();
+      parallel.getSquare(row, column).reveal();
+
+      do {
+        row = moves.nextInt(700);
+        column = moves.nextInt(900);
+      } while (sequential.getSquare(row, column).isMine());
+    }
+
+    assertEquals(changed[0], changed[1]);
+    assertEquals(sequential.getState(), parallel.getState());
+
+    for (int i = 0; i < 700; i++) {
+      for (int j = 0; j < 900; j++) {
+        assertEquals(sequential.getSquare(i, j).getType(), parallel.getSquare(i, j).getType());
+      }
+    }
+  }
+
+  private static Minefield.FieldHandler countChanges(final int[] changed, final int slot) {
+    return new Minefield.FieldHandler() {
+      @Override public void updateSquare(Square square) {
+        changed[slot] += 1;
+      }
+
+      @Override public void updateSquares(ChangeSet changes) {
+        changed[slot] += changes.size();
+      }
+
+      @Override public void updateBoard() {
+      }
+
+      @Override public void changeState(Minefield.State state) {
+      }
+    };
+  }
+
+  @Test
+  public void neighborOffsets() {
+    Neighbors neighbors = new Neighbors(3, 4);
+
+    assertEquals(3, neighbors.offsets(0).length);
+    assertEquals(5, neighbors.offsets(1).length);
+    assertEquals(8, neighbors.offsets(5).length);
+    assertEquals(3, neighbors.offsets(11).length);
+    assertEquals(1, new Neighbors(1, 2).offsets(0).length);
+  }
+
+  @Test
+  public void denseBoard() {
+    field = new Minefield(10, 10, 99, random);
+    field.getSquare(5, 5).reveal();
+
+    assertEquals(Squares.EXPOSED, field.getSquare(5, 5).getType());
+    assertEquals(8, field.getSquare(5, 5).getMineCount());
+    assertEquals(Minefield.State.WON, field.getState());
+  }
+
+  @Test
+  public void cascadeReportsChangedSquares() {
+    final int[] changed = new int[1];
+
+    field.addFieldHandler(new Minefield.FieldHandler() {
+      @Override public void updateSquare(Square square) {
+        changed[0] += 1;
+      }
+
+      @Override public void updateSquares(ChangeSet changes) {
+        changed[0] += changes.size();
+      }
+
+      @Override public void updateBoard() {
+      }
+
+      @Override public void changeState(Minefield.State state) {
+      }
+    });
+
+    field.getSquare(9, 9).reveal();
+
+    int exposed = 0;
+
+    for (int i = 0; i < field.getRowCount(); i++) {
+      for (int j = 0; j < field.getColumnCount(); j++) {
+        if (field.getSquare(i, j).getType() == Squares.EXPOSED) {
+          exposed++;
+        }
+      }
+    }
+
+    assertEquals(exposed, changed[0]);
+  }
+
+  @Test
+  public void forksDiverge() {
+    field.getSquare(0, 0).reveal();
+    Minefield fork = field.fork();
+
+    fork.getSquare(9, 9).toggleFlag();
+    field.getSquare(9, 8).toggleFlag();
+
+    assertEquals(Squares.FLAG, fork.getSquare(9, 9).getType());
+    assertEquals(Squares.BLANK, fork.getSquare(9, 8).getType());
+    assertEquals(Squares.BLANK, field.getSquare(9, 9).getType());
+    assertEquals(Squares.FLAG, field.getSquare(9, 8).getType());
+
+    for (int i = 0; i < field.getRowCount(); i++) {
+      for (int j = 0; j < field.getColumnCount(); j++) {
+        assertEquals(field.getSquare(i, j).isMine(), fork.getSquare(i, j).isMine());
+      }
+    }
+
+    fork.reset();
+    assertEquals(Minefield.State.START, fork.getState());
+    assertEquals(Minefield.State.PLAYING, field.getState());
+  }
+
+  @Test
+  public void forkingLeavesTheGameUnchanged() {
+    Minefield forked = new Minefield(10, 10, 10, new Random(4));
+    Minefield alone = new Minefield(10, 10, 10, new Random(4));
+
+    for (int game = 0; game < 3; game++) {
+      forked.fork();
+      forked.getSquare(0, 0).reveal();
+      forked.fork();
+      alone.getSquare(0, 0).reveal();
+
+      assertEquals(alone.getSeed(), forked.getSeed());
+      forked.reset();
+      alone.reset();
+    }
+  }
+
+  @Test
+  public void resetDoesNotAllocate() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+
+    field = new Minefield(1000, 1000, 1000, random);
+
+    for (int i = 0; i < 10; i++) {
+      field.getSquare(0, 0).reveal();
+      field.reset();
+    }
+
+    field.getSquare(0, 0).reveal();
+
+    long before = threads.getThreadAllocatedBytes(thread);
+    field.reset();
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+    assertTrue("reset allocated " + allocated + " bytes", allocated < 1024);
+  }
 }
@@ -0,0 +1,92 @@
+package org.foobar.minesweeper.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.foobar.minesweeper.model.Minefield.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UnboundedMinefieldTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void layoutIsPure() {
+    ProceduralMines a = new ProceduralMines(7, 0.2, 0, 0);
+    ProceduralMines b = new ProceduralMines(7, 0.2, 0, 0);
+    int mines = 0;
+
+    for (int row = -100; row < 100; row++) {
+      for (int column = -100; column < 100; column++) {
+        assertEquals(a.isMine(row, column), b.isMine(row, column));
+
+        if (a.isMine(row, column)) {
+          mines++;
+        }
+      }
+    }
+
+    assertFalse(a.isMine(0, 0));
+    assertEquals(0.2, mines / 40000.0, 0.01);
+  }
+
+  @Test
+  public void firstClickIsSafe() {
+    UnboundedMinefield field = new UnboundedMinefield(0.5, new Random(3));
+
+    field.reveal(Integer.MIN_VALUE, 0);
+
+    assertEquals(State.PLAYING, field.getState());
+    assertEquals(Squares.EXPOSED, field.getType(Integer.MIN_VALUE, 0));
+  }
+
+  @Test
+  public void storesOnlyTouchedChunks() {
+    UnboundedMinefield field = new UnboundedMinefield(0.25, new Random(3));
+
+    field.toggleFlag(1000000, -1000000);
+    field.reveal(0, 0);
+
+    assertTrue(field.getResidentChunkCount() < 10);
+    assertEquals(Squares.FLAG, field.getType(1000000, -1000000));
+  }
+
+  @Test
+  public void cascadeCrossesChunks() {
+    UnboundedMinefield field = new UnboundedMinefield(0.01, new Random(3));
+
+    field.reveal(0, 0);
+
+    assertEquals(Squares.EXPOSED, field.getType(-1, -1));
+    assertEquals(Squares.EXPOSED, field.getType(64, 64));
+  }
+
+  @Test
+  public void evictsOutsideViewport() throws Exception {
+    UnboundedMinefield field = new UnboundedMinefield(0.25, new Random(3));
+    field.setMemoryBudget(4096);
+    field.setViewport(0, 0, 20, 20);
+    field.setCompressedBudget(0);
+    field.setSpillDirectory(folder.getRoot().toPath());
+
+    for (int i = 0; i < 100; i++) {
+      field.toggleFlag(i * 1000, i * 1000);
+    }
+
+    assertEquals(1, field.getResidentChunkCount());
+    assertEquals(99, field.getEvictedChunkCount());
+    assertEquals(99, folder.getRoot().list().length);
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Squares.FLAG, field.getType(i * 1000, i * 1000));
+    }
+
+    field.reset();
+    assertEquals(0, folder.getRoot().list().length);
+  }
+}
@@ -0,0 +1,39 @@
+package org.foobar.minesweeper.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SimulationTest {
+  @Test
+  public void playsEveryGame() {
+    SimulationResult result = new Simulation(9, 9, 10, RandomStrategy::new)
+        .setParallelism(4)
+        .setSeed(1)
+        .run(1000);
+
+    assertEquals(1000, result.getGames());
+    assertEquals(0, result.getAbandoned());
+    assertTrue(result.getMoves() >= result.getGames());
+  }
+
+  @Test
+  public void sameSeedPlaysSameGames() {
+    Simulation simulation = new Simulation(9, 9, 10, RandomStrategy::new).setSeed(3);
+    SimulationResult first = simulation.setParallelism(4).run(2000);
+    SimulationResult second = simulation.setParallelism(3).run(2000);
+
+    assertEquals(first.getWins(), second.getWins());
+    assertEquals(first.getLosses(), second.getLosses());
+    assertEquals(first.getMoves(), second.getMoves());
+  }
+
+  @Test
+  public void abandonedGames() {
+    SimulationResult result = new Simulation(9, 9, 10, () -> (field, random) -> false)
+        .run(10);
+
+    assertEquals(10, result.getAbandoned());
+  }
+}
@@ -0,0 +1,264 @@
+package org.foobar.minesweeper.solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.foobar.minesweeper.model.Minefield;
+import org.foobar.minesweeper.model.Square;
+import org.foobar.minesweeper.model.Squares;
+import org.junit.Test;
+
+public class SolverTest {
+  @Test
+  public void deductionsAreSound() {
+    for (int game = 0; game < 200; game++) {
+      Minefield field = new Minefield(16, 16, 40);
+      Solver solver = new Solver(field);
+
+      field.getSquare(8, 8).reveal();
+
+      while (!field.isGameOver()) {
+        solver.solve();
+        Square safe = solver.findSafe();
+
+        if (safe == null) {
+          break;
+        }
+
+        safe.reveal();
+        assertFalse(field.getState() == Minefield.State.LOST);
+      }
+
+      for (int row = 0; row < 16; row++) {
+        for (int column = 0; column < 16; column++) {
+          if (solver.isMine(row, column) && !field.isGameOver()) {
+            assertTrue(field.getSquare(row, column).getType() == Squares.BLANK);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void solvesLargeBoardsIncrementally() {
+    Minefield field = new Minefield(1000, 1000, 150000);
+    Solver solver = new Solver(field);
+
+    field.getSquare(500, 500).reveal();
+
+    long start = System.nanoTime();
+    int moves = 0;
+
+    while (!field.isGameOver() && moves < 1000) {
+      solver.solve();
+      Square safe = solver.findSafe();
+
+      if (safe == null) {
+        break;
+      }
+
+      safe.reveal();
+      moves++;
+    }
+
+    long perMove = (System.nanoTime() - start) / Math.max(moves, 1);
+    assertTrue("took " + perMove + " ns per move", perMove < 10000000);
+  }
+
+  @Test
+  public void probabilitiesMatchBruteForce() {
+    Random random = new Random(7);
+
+    for (int game = 0; game < 50; game++) {
+      Minefield field = new Minefield(4, 5, 4);
+      field.getSquare(random.nextInt(4), random.nextInt(5)).reveal();
+
+      if (field.isGameOver()) {
+        continue;
+      }
+
+      List<Square> covered = new ArrayList<>();
+      List<Square> numbers = new ArrayList<>();
+
+      for (int row = 0; row < 4; row++) {
+        for (int column = 0; column < 5; column++) {
+          Square square = field.getSquare(row, column);
+
+          if (square.getType() == Squares.BLANK) {
+            covered.add(square);
+          } else {
+            numbers.add(square);
+          }
+        }
+      }
+
+      double[] mines = new double[covered.size()];
+      double layouts = 0;
+
+      for (int set = 0; set < 1 << covered.size(); set++) {
+        if (Integer.bitCount(set) != 4 || !fits(set, covered, numbers)) {
+          continue;
+        }
+
+        layouts++;
+
+        for (int i = 0; i < covered.size(); i++) {
+          if ((set & (1 << i)) != 0) {
+            mines[i]++;
+          }
+        }
+      }
+
+      Probabilities chances = new ProbabilityEngine(field).compute();
+      assertTrue(chances.isExact());
+
+      for (int i = 0; i < covered.size(); i++) {
+        Square square = covered.get(i);
+        assertEquals(mines[i] / layouts, chances.get(square.getRow(), square.getColumn()), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void probabilitiesKeepToBudget() {
+    Minefield field = new Minefield(300, 300, 20000);
+    field.setNextSeed(11);
+    field.getSquare(150, 150).reveal();
+
+    Solver solver = new Solver(field);
+
+    for (Square safe = null; !field.isGameOver(); safe.reveal()) {
+      solver.solve();
+
+      if ((safe = solver.findSafe()) == null) {
+        break;
+      }
+    }
+
+    long start = System.nanoTime();
+    Probabilities chances = new ProbabilityEngine(field, new Random(3))
+        .setTimeBudget(100, TimeUnit.MILLISECONDS).compute();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertTrue("took " + elapsed + " ms", elapsed < 2000);
+    double interior = chances.getInteriorProbability();
+    assertTrue("interior " + interior + " exact " + chances.isExact(), interior > 0.1 && interior < 0.3);
+  }
+
+  @Test
+  public void samplesEstimateTheCounts() {
+    Random random = new Random(5);
+    int size = 24;
+    boolean[] layout = new boolean[size];
+    int[][] constraints = new int[size - 2][];
+    int[] needs = new int[size - 2];
+
+    for (int i = 0; i < size; i++) {
+      layout[i] = random.nextInt(4) == 0;
+    }
+
+    for (int c = 0; c < constraints.length; c++) {
+      constraints[c] = new int[] { c, c + 1, c + 2 };
+      needs[c] = (layout[c] ? 1 : 0) + (layout[c + 1] ? 1 : 0) + (layout[c + 2] ? 1 : 0);
+    }
+
+    int[] squares = new int[size];
+
+    for (int i = 0; i < size; i++) {
+      squares[i] = i;
+    }
+
+    Component exact = new Component(squares, constraints, needs);
+    Component sampled = new Component(squares, constraints, needs);
+    long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+
+    assertTrue(exact.enumerate(deadline));
+    assertTrue(sampled.sample(deadline, new Random(9), 0.2));
+
+    double[] expected = chances(exact);
+    double[] actual = chances(sampled);
+
+    for (int i = 0; i < size; i++) {
+      assertEquals(expected[i], actual[i], 0.05);
+    }
+  }
+
+  @Test
+  public void noGuessBoardsAreSolvable() {
+    NoGuessGenerator generator = new NoGuessGenerator().setTimeBudget(10, TimeUnit.SECONDS);
+    Minefield field = new Minefield(16, 30, 99);
+    field.setLayout(generator);
+
+    for (int game = 0; game < 5; game++) {
+      field.reset();
+
+      Solver solver = new Solver(field);
+      field.getSquare(8, 15).reveal();
+
+      for (Square safe = null; field.getState() == Minefield.State.PLAYING; safe.reveal()) {
+        solver.solve();
+
+        if ((safe = solver.findSafe()) == null) {
+          break;
+        }
+      }
+
+      solver.detach();
+      assertEquals(Minefield.State.WON, field.getState());
+    }
+
+    assertEquals(5, generator.getLayoutCount());
+    assertEquals(0, generator.getTimeoutCount());
+  }
+
+  /**
+   * The chance of a mine on each square of {@code component}, with every
+   * layout equally likely.
+   */
+  private static double[] chances(Component component) {
+    double[] chances = new double[component.size()];
+    double total = 0;
+
+    for (int k = 0; k <= component.size(); k++) {
+      double scale = Math.exp(-k * component.getLogOdds());
+      total += component.getWeight(k) * scale;
+
+      for (int i = 0; i < chances.length; i++) {
+        chances[i] += component.getMineWeight(k, i) * scale;
+      }
+    }
+
+    for (int i = 0; i < chances.length; i++) {
+      chances[i] /= total;
+    }
+
+    return chances;
+  }
+
+  private static boolean fits(int set, List<Square> covered, List<Square> numbers) {
+    for (Square number : numbers) {
+      int count = 0;
+
+      for (int i = 0; i < covered.size(); i++) {
+        Square square = covered.get(i);
+
+        if ((set & (1 << i)) != 0 && Math.abs(square.getRow() - number.getRow()) <= 1
+            && Math.abs(square.getColumn() - number.getColumn()) <= 1) {
+          count++;
+        }
+      }
+
+      if (count != number.getMineCount()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+}